@@ -0,0 +1,95 @@
+package finalProject;
+
+/**
+ * A class containing fast static methods for angles, meant for the control loops.
+ * Normalizing and comparing angles is done without divisions by 2pi or branches on the angle,
+ * and sin and cos can be read from a table instead of being calculated.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public abstract class Angle {
+
+	/**
+	 * A full turn, in rads.
+	 */
+	public static final double TWO_PI = 2*Math.PI;
+
+	//the sin table covers a full turn with one extra entry, so interpolation never needs to wrap around
+	private static final int TABLE_SIZE = 1024;
+	private static final double STEP = TWO_PI / TABLE_SIZE, INVERSE_STEP = TABLE_SIZE / TWO_PI;
+	private static final double[] SIN = new double[TABLE_SIZE + 1];
+
+	static {
+		for(int i = 0; i <= TABLE_SIZE; i++)
+			SIN[i] = Math.sin(i * STEP);
+	}
+
+	/**
+	 * The largest difference between sin() or cos() and Math.sin() or Math.cos(), for any angle.
+	 * It is the error of a linear interpolation between table entries, step^2/8, plus rounding.
+	 */
+	public static final double TABLE_ERROR = STEP * STEP / 8 + 1e-12;
+
+
+	/**
+	 * Brings an angle between 0 and 2pi.
+	 *
+	 * @param a The angle, in rads. Any value.
+	 * @return The same angle, in rads between 0 (included) and 2pi (excluded).
+	 */
+	public static double normalize(double a){
+		double result = a - TWO_PI * Math.floor(a / TWO_PI);
+		//very small negative angles round up to exactly 2pi
+		return (result < TWO_PI) ? result : 0;
+	}
+
+	/**
+	 * Calculates the signed shortest difference from one angle to another.
+	 *
+	 * @param from The starting angle, in rads.
+	 * @param to The final angle, in rads.
+	 * @return The angle to turn by to go from the first angle to the second, in rads between -pi and pi. Positive counterclockwise.
+	 * For instance, if from = pi/4 and to = 3pi/2, the result will be -3pi/4.
+	 */
+	public static double difference(double from, double to){
+		double d = to - from;
+		return d - TWO_PI * Math.floor((d + Math.PI) / TWO_PI);
+	}
+
+	/**
+	 * Calculates the smallest difference between two angles, whatever the direction.
+	 *
+	 * @param a1 The first angle, in rads.
+	 * @param a2 The second angle, in rads.
+	 * @return The smallest difference between a1 and a2, in rads between 0 and pi.
+	 */
+	public static double distance(double a1, double a2){
+		return Math.abs(difference(a1, a2));
+	}
+
+	/**
+	 * Calculates the sine of an angle from a table. It is faster than Math.sin(), and never off by more than TABLE_ERROR.
+	 *
+	 * @param a The angle, in rads.
+	 * @return The sine of the angle.
+	 */
+	public static double sin(double a){
+		double position = normalize(a) * INVERSE_STEP;
+		int i = (int) position;
+		//the angle can round up to the last entry, which is also the first one
+		if(i >= TABLE_SIZE)
+			return SIN[TABLE_SIZE];
+		return SIN[i] + (position - i) * (SIN[i+1] - SIN[i]);
+	}
+
+	/**
+	 * Calculates the cosine of an angle from a table. It is faster than Math.cos(), and never off by more than TABLE_ERROR.
+	 *
+	 * @param a The angle, in rads.
+	 * @return The cosine of the angle.
+	 */
+	public static double cos(double a){
+		return sin(a + Math.PI/2);
+	}
+}
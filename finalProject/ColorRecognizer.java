@@ -1,26 +1,34 @@
 package finalProject;
 
-import finalProject.Filter.Type;
 import lejos.hardware.sensor.EV3ColorSensor;
 
 /**
  * The class responsible for recognizing the color of the ball
+ * The color sensor is read by the sensor sampler, and every RGB reading is classified as it arrives.
+ * The decision over the last readings is published with a confidence value, so nothing needs to be sampled when it is read.
  * 
  * @author Dennis Liu
  * @version 1.0
  */
 
-public class ColorRecognizer {
+public class ColorRecognizer implements SampleListener{
 	
 	//member variables
 	private Navigator navigator;
 	private boolean recognizing = true;
 	private final static double RED_R_THRESHOLD = 0.02, RED_G_THRESHOLD = 0.03, RED_B_THRESHOLD = 0.02,
-								BLUE_G_THRESHOLD = 0.01, BLUE_B_THRESHOLD = 0.01;
+								BLUE_G_THRESHOLD = 0.01, BLUE_B_THRESHOLD = 0.01, MIN_CONFIDENCE = 0.6;
+	private final static int PERIOD = 10, WINDOW = 5;
+	private final static Color[] COLORS = Color.values();
 //	private final static int COOLDOWN = 300;
-	public Filter rFilter;
-	public Filter gFilter;
-	public Filter bFilter;
+	private FilterChain rgb;
+	private Color[] votes;
+	private int[] counts;
+	private int index;
+	private Color color;
+	private double confidence;
+	private long decisions;
+	private Object lock;
 		
 	public enum Color{
 		/**
@@ -34,11 +42,61 @@ public class ColorRecognizer {
 		BLUE
 	}
 	
-	public ColorRecognizer(Navigator navigator, EV3ColorSensor colorSensor){
-		rFilter = new Filter(Type.RED, colorSensor.getRGBMode(),5);
-		gFilter = new Filter(Type.GREEN, colorSensor.getRGBMode(),5);
-		bFilter = new Filter(Type.BLUE, colorSensor.getRGBMode(),5);
+	/**
+	 * Constructor for ColorRecognizer.
+	 * 
+	 * @param navigator The robot's navigator.
+	 * @param colorSensor The color sensor facing the balls.
+	 * @param sampler The sensor sampler that will read the color sensor.
+	 */
+	public ColorRecognizer(Navigator navigator, EV3ColorSensor colorSensor, SensorSampler sampler){
+		//the readings are classified as they arrive, so the chain needs no filter
+		rgb = sampler.register(colorSensor.getRGBMode(), PERIOD);
 		this.navigator = navigator;
+		votes = new Color[WINDOW];
+		counts = new int[COLORS.length + 1];	//the last count is for readings that are neither color
+		counts[counts.length-1] = WINDOW;
+		color = null;
+		confidence = 1;
+		lock = new Object();
+		rgb.addListener(this);
+	}
+	
+	/**
+	 * Classifies the latest RGB reading and publishes the decision over the last readings.
+	 * Called by the sensor sampler whenever the color sensor is read.
+	 * 
+	 * @param chain The chain of the color sensor.
+	 */
+	public void sampleAdded(FilterChain chain){
+		float r = chain.getSample(0), g = chain.getSample(1), b = chain.getSample(2);
+		Color vote = null;
+		//readings of 1 or more are invalid
+		if(r < 1 && g < 1 && b < 1){
+			if(isColor(Color.RED, r, g, b))
+				vote = Color.RED;
+			else if(isColor(Color.BLUE, r, g, b))
+				vote = Color.BLUE;
+		}
+		
+		synchronized (lock) {
+			//replace the oldest vote by the new one
+			counts[votes[index] == null ? counts.length-1 : votes[index].ordinal()]--;
+			counts[vote == null ? counts.length-1 : vote.ordinal()]++;
+			votes[index] = vote;
+			index = (index + 1) % WINDOW;
+			
+			//the decision is the color with the most votes, red first
+			int best = counts.length-1;
+			for(int i = counts.length-2; i >= 0; i--){
+				if(counts[i] >= counts[best])
+					best = i;
+			}
+			color = best == counts.length-1 ? null : COLORS[best];
+			confidence = (double) counts[best] / WINDOW;
+			decisions++;
+			lock.notifyAll();
+		}
 	}
 	
 	//recognize a ball's color and perform either grab or navigate to next ball
@@ -67,19 +125,25 @@ public class ColorRecognizer {
 		}
 	}
 	
+	//waits for the next decision and checks if it is the given color
 	private boolean checkColor(Color c){
-		rFilter.samples = new float[5*3];
-		rFilter.saturateSamples(0,true);
-		gFilter.samples = new float[5*3];
-		gFilter.saturateSamples(0,true);
-		bFilter.samples = new float[5*3];
-		bFilter.saturateSamples(0,true);
+		synchronized (lock) {
+			long last = decisions;
+			while(decisions == last){
+				try{lock.wait();}catch(InterruptedException e){Thread.currentThread().interrupt(); return false;}
+			}
+			return color == c && confidence >= MIN_CONFIDENCE;
+		}
+	}
+	
+	//checks if a single RGB reading is of the given color
+	private static boolean isColor(Color c, float r, float g, float b){
 		switch(c){
 		case RED:
 			
-			if(Math.abs(rFilter.getFilteredData())>=RED_R_THRESHOLD&&
-				Math.abs(bFilter.getFilteredData())<=RED_B_THRESHOLD&&
-				Math.abs(gFilter.getFilteredData())<=RED_G_THRESHOLD){
+			if(Math.abs(r)>=RED_R_THRESHOLD&&
+				Math.abs(b)<=RED_B_THRESHOLD&&
+				Math.abs(g)<=RED_G_THRESHOLD){
 				
 				return true;
 			} else {
@@ -87,8 +151,8 @@ public class ColorRecognizer {
 			}
 		case BLUE:
 			
-			if(Math.abs(bFilter.getFilteredData())>=BLUE_B_THRESHOLD&&
-			Math.abs(gFilter.getFilteredData())>=BLUE_G_THRESHOLD){
+			if(Math.abs(b)>=BLUE_B_THRESHOLD&&
+			Math.abs(g)>=BLUE_G_THRESHOLD){
 			
 			return true;
 			} else {
@@ -98,15 +162,55 @@ public class ColorRecognizer {
 		return false;
 	}
 	
+	/**
+	 * Waits until a ball is recognized with enough confidence, or until the navigator stops.
+	 * Returns early if the thread is interrupted, leaving its interrupt flag set.
+	 * 
+	 * @return The color of the ball, or null if the navigator stopped before seeing a ball.
+	 */
 	public Color waitForBall(){
-		boolean isRed, isBlue;
-		while(navigator.isNavigating()){
-			isRed = checkColor(Color.RED);
-			isBlue = checkColor(Color.BLUE);
-			if(isRed || isBlue){
-				return isRed ? Color.RED : Color.BLUE;
+		synchronized (lock) {
+			while(navigator.isNavigating()){
+				if(color != null && confidence >= MIN_CONFIDENCE){
+					return color;
+				}
+				//every reading wakes this thread, so the navigator stopping is noticed within a reading
+				try{lock.wait();}catch(InterruptedException e){Thread.currentThread().interrupt(); return null;}
 			}
 		}
 		return null;
 	}
+	
+	/**
+	 * Returns the color of the ball currently seen.
+	 * 
+	 * @return The color recognized over the last readings, or null if they are mostly neither red nor blue.
+	 */
+	public Color getColor(){
+		synchronized (lock) {
+			return color;
+		}
+	}
+	
+	/**
+	 * Returns how confident the current decision is.
+	 * 
+	 * @return The fraction of the last readings that agree with getColor(), between 0 and 1.
+	 */
+	public double getConfidence(){
+		synchronized (lock) {
+			return confidence;
+		}
+	}
+	
+	/**
+	 * Returns a string representation of the current decision which fits the EV3's LCD screen.
+	 * 
+	 * @return The color recognized and its confidence, in string form.
+	 */
+	public String toString(){
+		synchronized (lock) {
+			return Utility.truncate("Color: " + color + " " + confidence, 16);
+		}
+	}
 }
@@ -0,0 +1,94 @@
+package finalProject;
+
+/**
+ * A handle on a move command given to the Navigator, which tells when the robot is done with it.
+ * It is signalled by the navigator thread, so waiting on it does not use the processor.
+ * A move is done when the robot reaches its destination, or when it is cancelled by another move command.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class Completion {
+
+	//member variables
+	private boolean done, cancelled;
+	private Object lock;
+
+
+	/**
+	 * Constructor for Completion. The move is not done yet.
+	 */
+	Completion(){
+		lock = new Object();
+	}
+
+	/**
+	 * Signals that the move is done, and wakes up the threads waiting for it. Does nothing if it was already done.
+	 *
+	 * @param cancelled True if the move was cancelled before the robot reached its destination.
+	 */
+	void complete(boolean cancelled){
+		synchronized (lock) {
+			if(done)
+				return;
+			done = true;
+			this.cancelled = cancelled;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until the move is done. Returns early if the thread is interrupted, leaving its interrupt flag set.
+	 *
+	 * @return True if the robot reached its destination, false if the move was cancelled or the thread was interrupted.
+	 */
+	public boolean await(){
+		synchronized (lock) {
+			while(!done){
+				try{lock.wait();}catch(InterruptedException e){Thread.currentThread().interrupt(); return false;}
+			}
+			return !cancelled;
+		}
+	}
+
+	/**
+	 * Waits until the move is done, or until the timeout runs out. Returns early if the thread is interrupted, leaving its interrupt flag set.
+	 *
+	 * @param timeout The longest time to wait, in ms.
+	 * @return True if the robot reached its destination, false if the move was cancelled, the time ran out or the thread was interrupted.
+	 */
+	public boolean await(long timeout){
+		long deadline = System.currentTimeMillis() + timeout, remaining;
+		synchronized (lock) {
+			while(!done){
+				remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0)
+					return false;
+				try{lock.wait(remaining);}catch(InterruptedException e){Thread.currentThread().interrupt(); return false;}
+			}
+			return !cancelled;
+		}
+	}
+
+	/**
+	 * Returns true if the move is done, whether the robot reached its destination or the move was cancelled. Never blocks.
+	 *
+	 * @return Whether or not the move is done.
+	 */
+	public boolean isDone(){
+		synchronized (lock) {
+			return done;
+		}
+	}
+
+	/**
+	 * Returns true if the move was cancelled by another move command before the robot reached its destination.
+	 *
+	 * @return Whether or not the move was cancelled.
+	 */
+	public boolean isCancelled(){
+		synchronized (lock) {
+			return cancelled;
+		}
+	}
+}
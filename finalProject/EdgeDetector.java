@@ -0,0 +1,82 @@
+package finalProject;
+
+/**
+ * The class responsible for detecting edges in filtered sensor data, such as black lines crossed by a light sensor.
+ * It checks the filtered data every time its chain is sampled, and uses two thresholds so that noise around
+ * a single threshold does not create several edges. As such, no cooldown is needed after an edge.
+ * 
+ * If the rising threshold is above the falling threshold, a rising edge happens when the data goes above the rising threshold
+ * and a falling edge when it goes back below the falling threshold. If the rising threshold is below the falling threshold,
+ * the opposite happens: a rising edge happens when the data goes below the rising threshold,
+ * and a falling edge when it goes back above the falling threshold.
+ * 
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class EdgeDetector implements SampleListener {
+	
+	//member variables
+	private final Filter input;
+	private final double risingThreshold, fallingThreshold;
+	private final boolean inverted;
+	private final EdgeListener listener;
+	private volatile boolean high;
+	private volatile long lastEdge;
+	
+	/**
+	 * Constructor for EdgeDetector. Starts detecting edges right away.
+	 * 
+	 * @param input The filter whose data is checked. Must be part of a FilterChain.
+	 * @param risingThreshold The threshold the data must cross for a rising edge.
+	 * @param fallingThreshold The threshold the data must cross back for a falling edge.
+	 * @param listener The listener that will be called on every edge, from the thread sampling the sensor.
+	 */
+	public EdgeDetector(Filter input, double risingThreshold, double fallingThreshold, EdgeListener listener){
+		if(input.chain == null)
+			throw new IllegalArgumentException("The input filter is not part of a chain.");
+		this.input = input;
+		this.risingThreshold = risingThreshold;
+		this.fallingThreshold = fallingThreshold;
+		this.inverted = risingThreshold < fallingThreshold;
+		this.listener = listener;
+		high = false;
+		input.chain.addListener(this);
+	}
+	
+	/**
+	 * Checks the latest filtered data for an edge. Called by the chain of the input filter after every sample.
+	 * 
+	 * @param chain The chain of the input filter.
+	 */
+	public void sampleAdded(FilterChain chain){
+		double value = input.getFilteredData();
+		if(!high && (inverted ? value <= risingThreshold : value >= risingThreshold)){
+			high = true;
+			lastEdge = input.getTimestamp();
+			listener.risingEdge(this, lastEdge);
+		}
+		else if(high && (inverted ? value >= fallingThreshold : value <= fallingThreshold)){
+			high = false;
+			lastEdge = input.getTimestamp();
+			listener.fallingEdge(this, lastEdge);
+		}
+	}
+	
+	/**
+	 * Returns whether the last edge was a rising edge.
+	 * 
+	 * @return True if the data is between a rising edge and a falling edge.
+	 */
+	public boolean isHigh(){
+		return high;
+	}
+	
+	/**
+	 * Returns the time of the last edge.
+	 * 
+	 * @return The time at which the sample that caused the last edge was read, from System.nanoTime().
+	 */
+	public long getLastEdge(){
+		return lastEdge;
+	}
+}
@@ -0,0 +1,26 @@
+package finalProject;
+
+/**
+ * The interface for objects that react to the edges found by an EdgeDetector.
+ * 
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public interface EdgeListener {
+	
+	/**
+	 * Called when the filtered data crosses the rising threshold of the detector.
+	 * 
+	 * @param detector The detector that found the edge.
+	 * @param time The time at which the sample that caused the edge was read, from System.nanoTime().
+	 */
+	public void risingEdge(EdgeDetector detector, long time);
+	
+	/**
+	 * Called when the filtered data crosses back the falling threshold of the detector.
+	 * 
+	 * @param detector The detector that found the edge.
+	 * @param time The time at which the sample that caused the edge was read, from System.nanoTime().
+	 */
+	public void fallingEdge(EdgeDetector detector, long time);
+}
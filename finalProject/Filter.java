@@ -1,11 +1,10 @@
 package finalProject;
 
-import java.util.Arrays;
-
 import lejos.robotics.SampleProvider;
 
 /**
  * The class responsible for filtering sensor data.
+ * The filtered data of each type is calculated by its own FilterStrategy, which is chosen once at construction.
  * 
  * @version 1.0
  * @author Mathieu
@@ -15,10 +14,13 @@ public class Filter {
 	
 	private final Type t;
 	private final SampleProvider s;
-	public float[] samples;
+	private final FilterStrategy strategy;
 	private int index;
 	private int window;
 	private Object lock;
+	private volatile double value;
+	private volatile long timestamp;
+	FilterChain chain;
 	
 	/**
 	 * The type of filter used. Determines how the filtered data will be calculated from the samples.
@@ -35,7 +37,7 @@ public class Filter {
 		MEDIAN,
 		
 		/**
-		 * Creates a derivative filter.
+		 * Creates a derivative filter, which gives the rate of change of the samples per second.
 		 */
 		DERIVATIVE,
 		
@@ -57,7 +59,25 @@ public class Filter {
 		/**
 		 * Creates a filter for blue RGB value.
 		 */
-		BLUE
+		BLUE,
+		
+		/**
+		 * Creates an exponential moving average filter. It smooths about as much as an average over the same window, with less lag.
+		 * Only the estimate is stored, whatever the window.
+		 */
+		EMA,
+		
+		/**
+		 * Creates a scalar Kalman filter, which tracks a value that drifts randomly between samples.
+		 * The window only determines how many samples are needed to saturate it. The noises can be set with setNoise().
+		 */
+		KALMAN,
+		
+		/**
+		 * Creates an outlier-rejecting (Hampel) filter. Gives the latest sample, unless it is too far from the median
+		 * of the samples compared to their median absolute deviation, in which case the median is given instead.
+		 */
+		HAMPEL
 	}
 	
 	/**
@@ -77,140 +97,176 @@ public class Filter {
 			this.window = 2;
 		if(t == Type.EMPTY)
 			this.window = 1;
-		//if RGB mode, use saturateRGBsample
-		if(t == Type.RED || t == Type.GREEN || t == Type.BLUE){
-			samples = new float[this.window*3];
-			saturateSamples(0,true);
-		} else {
-		//if other mode, use saturateSample
-			samples = new float[this.window];
-			saturateSamples(0,false);
-		}
-		
+		//RGB filters reading their own sensor keep whole interleaved readings
+		strategy = FilterStrategy.create(t, this.window, true);
+		saturateSamples(0);
+	}
+	
+	/**
+	 * Constructor for a Filter that does not read a sensor by itself. Its samples must be given through addSample(float),
+	 * usually by a FilterChain.
+	 * 
+	 * @param t The type of filter used.
+	 * @param window The amount of samples used to calculate the filtered data.
+	 * If the type is DERIVATIVE, the window will be automatically set to 2. If the type is EMPTY, the window will be set to 1.
+	 */
+	public Filter(Type t, int window){
+		lock = new Object();
+		this.t = t;
+		this.s = null;
+		this.window = window;
+		if(t == Type.DERIVATIVE)
+			this.window = 2;
+		if(t == Type.EMPTY)
+			this.window = 1;
+		strategy = FilterStrategy.create(t, this.window, false);
 	}
 	
 	/**
 	 * Adds a new sensor reading to the samples.
+	 * If the filter is part of a FilterChain, a new reading is fetched by the chain and given to all of its filters.
+	 * If that chain is registered to a SensorSampler, waits until the sampler adds the next reading instead.
 	 */
 	public void addSample(){
+		if(s == null){
+			if(chain != null && chain.sampled)
+				waitForSample();
+			else if(chain != null)
+				chain.addSample();
+			return;
+		}
 		synchronized (lock) {
-			s.fetchSample(samples, index % samples.length);
-			index++;
+			long time = System.nanoTime();
+			publish(strategy.fetch(s, time), time);
 		}
 	}
 	
 	/**
-	 * Adds 3 new RGB sensor readings to the samples.
+	 * Adds a sample which was read elsewhere to the samples. The sample is timestamped with the current time.
+	 * 
+	 * @param sample The new sample.
 	 */
-	public void addRGBSample(){
+	public void addSample(float sample){
+		addSample(sample, System.nanoTime());
+	}
+	
+	/**
+	 * Adds a sample which was read elsewhere to the samples.
+	 * 
+	 * @param sample The new sample.
+	 * @param time The time at which the sample was read, from System.nanoTime().
+	 */
+	public void addSample(float sample, long time){
 		synchronized (lock) {
-			s.fetchSample(samples, index % samples.length);
-			index+=3; //skips 3 indices instead of 1, since each sample adds 3 elements to array
+			publish(strategy.add(sample, time), time);
 		}
 	}
 	
+	//waits until a new sample is added by another thread. If the thread is interrupted, returns early with its interrupt flag set
+	private void waitForSample(){
+		synchronized (lock) {
+			int target = index + 1;
+			while(index - target < 0){
+				try{lock.wait();}catch(InterruptedException e){Thread.currentThread().interrupt(); return;}
+			}
+		}
+	}
+	
+	//publishes the filtered data of a new sample and wakes up the threads waiting for it. Must be called while holding the lock
+	private void publish(double filtered, long time){
+		index++;
+		value = filtered;
+		timestamp = time;
+		lock.notifyAll();
+	}
+	
+	/**
+	 * Adds a new RGB sensor reading to the samples. The whole reading is fetched at once.
+	 * This is the same as addSample().
+	 */
+	public void addRGBSample(){
+		addSample();
+	}
+	
 	/**
 	 * Fills the entire sample array with new readings separated by a time interval.
 	 * 
 	 * @param period The time interval between two readings.
-	 * @param boolean The flag indicating if RGB samples.
+	 * @param boolean The flag indicating if RGB samples. RGB readings are now fetched whole by addSample(), so it has no effect.
 	 */
 	public void saturateSamples(int period, boolean RGB){
-		for(int i=0; i<window; i++){
-			if(!RGB){
-				addSample();
-			} else {
-				addRGBSample();
-			}
-			try{Thread.sleep(period);}catch(Exception e){}
-		}
+		saturateSamples(period);
 	}
 	
 	/**
 	 * The generic method to be used for US filter
+	 * If the filter is part of a FilterChain, the filters feeding it are saturated as well, so that none of its samples
+	 * were calculated from readings older than the first new one.
 	 * @param period The time interval between two readings.
 	 */
 	public void saturateSamples(int period){
-		for(int i=0; i<window; i++){
+		int fill = (chain == null) ? window : chain.getFill(this);
+		for(int i=0; i<fill; i++){
 			addSample();
 			try{Thread.sleep(period);}catch(Exception e){}
 		}
 	}
 	
 	/**
-	 * Calculates the filtered data depending on the type of the filter.
-	 * For type AVERAGE, the result will be the average of all the samples.
-	 * For type MEDIAN, the result will be the median of all the samples.
-	 * For type DERIVATIVE, the result will be the difference between the current and previous sample.
+	 * Returns the filtered data, which depends on the type of the filter.
+	 * For type AVERAGE, the result will be the average of all the samples, ignoring infinite readings. It is calculated in constant time.
+	 * For type MEDIAN, the result will be the median of all the samples. It is calculated in constant time.
+	 * For type DERIVATIVE, the result will be the difference between the current and previous sample divided by the time between them, in units per second.
+	 * It does not depend on how often the samples are added.
+	 * For types EMA and KALMAN, the result will be the current estimate, which is updated in constant time and memory.
+	 * For type HAMPEL, the result will be the latest sample, or the median of the samples if the latest sample is an outlier.
+	 * 
+	 * For types RED, GREEN and BLUE, the result will be the first stored sample of the channel which is below 1, or 0 if there are none.
+	 * 
+	 * The filtered data is calculated whenever a sample is added and published without locking,
+	 * so reading it never blocks the thread adding the samples.
 	 * 
 	 * @return The filtered data.
 	 */
 	public double getFilteredData(){
-		double result = 0.0;
+		return value;
+	}
+	
+	//the amount of samples needed to saturate the filter
+	int getWindow(){
+		return window;
+	}
+	
+	//how far the filtered data lags behind the samples given to this filter, in samples
+	double getDelay(){
 		synchronized (lock) {
-			switch(t){
-			case AVERAGE:
-				int i=0;
-				for(float f : samples){
-					if(f != Float.POSITIVE_INFINITY){
-						result += f;
-						i++;
-					}
-				}
-				result = (i == 0) ? Float.POSITIVE_INFINITY : result / i;
-				break;
-			
-			case MEDIAN:
-				float[] sorted = Arrays.copyOf(samples, samples.length);
-				Arrays.sort(sorted);
-				result = sorted[sorted.length/2];
-				if(sorted.length % 2 == 0){
-					result = (result + sorted[sorted.length/2]) / 2;
-				}
-				break;
-				
-			case DERIVATIVE:
-				result = samples[0] - samples[1];
-				if(index == 1)
-					result *= -1;
-				break;
-				
-			case EMPTY:
-				result = samples[0];
-				break;
-				
-			case RED:
-				for(int j = 0; j<samples.length; j+=3){
-					if(samples[j]<1){
-						result = samples[j];
-						break;
-					}
-				}
-				break;
-			
-			case GREEN:
-				for(int j = 1; j<samples.length; j+=3){
-					if(samples[j]<1){
-						result = samples[j];
-						break;
-					}
-				}
-				break;
-				
-			case BLUE:
-				for(int j = 2; j<samples.length; j+=3){
-					if(samples[j]<1){
-						result = samples[j];
-						break;
-					}
-				}
-				break;
-			}
+			return strategy.delay();
 		}
-		
-		return result;
 	}
-
+	
+	/**
+	 * Sets the noises used by the KALMAN filter. Has no effect on other types.
+	 * The default noises suit the ultrasonic sensor in its distance mode (in meters).
+	 * 
+	 * @param processNoise How much the real value drifts, as a variance per second (in squared units of the sensor per second).
+	 * @param measurementNoise How noisy a single sample is, as a variance (in squared units of the sensor).
+	 */
+	public void setNoise(double processNoise, double measurementNoise){
+		synchronized (lock) {
+			if(strategy instanceof FilterStrategy.Kalman)
+				((FilterStrategy.Kalman) strategy).setNoise(processNoise, measurementNoise);
+		}
+	}
+	
+	/**
+	 * Returns the time at which the latest sample was read.
+	 * 
+	 * @return The time of the latest sample, from System.nanoTime().
+	 */
+	public long getTimestamp(){
+		return timestamp;
+	}
+	
 	/**
 	 * Returns a string representation of the filter's current value which fits the EV3's LCD screen.
 	 * 
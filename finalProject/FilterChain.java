@@ -0,0 +1,222 @@
+package finalProject;
+
+import java.util.ArrayList;
+
+import finalProject.Filter.Type;
+import lejos.robotics.SampleProvider;
+
+/**
+ * The class responsible for feeding a single sensor to several filters.
+ * Each reading of the sensor is fetched once and given to every filter of the chain, in the order they were added.
+ * A filter can be fed either by the sensor itself or by the filtered data of a filter added before it,
+ * which allows pipelines such as a median followed by an average. Every filter of the chain can be read independently.
+ * For sensors returning several values per reading, such as the RGB mode of a color sensor, filters of type RED, GREEN and BLUE
+ * fed by the sensor receive their own channel, and all other filters receive the first one.
+ * A chain is usually registered to a SensorSampler, which then adds its samples.
+ * 
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class FilterChain {
+	
+	//member variables
+	private final SampleProvider s;
+	private final float[] sample;
+	private ArrayList<Filter> filters;
+	private ArrayList<Filter> inputs;
+	private ArrayList<Integer> channels;
+	private ArrayList<SampleListener> listeners;
+	private ArrayList<Integer> fills;
+	private int fill;
+	private long timestamp;
+	private Object lock;
+	volatile boolean sampled;
+	volatile long period;
+	
+	/**
+	 * Constructor for FilterChain. No reading is done until a sample is added.
+	 * 
+	 * @param s The sensor (and mode) that will be filtered.
+	 */
+	public FilterChain(SampleProvider s){
+		this.s = s;
+		this.sample = new float[s.sampleSize()];
+		filters = new ArrayList<Filter>();
+		inputs = new ArrayList<Filter>();
+		channels = new ArrayList<Integer>();
+		listeners = new ArrayList<SampleListener>();
+		fills = new ArrayList<Integer>();
+		fill = 0;
+		lock = new Object();
+	}
+	
+	/**
+	 * Adds a filter at the end of the chain. It is fed by the last filter that was added,
+	 * or by the sensor if it is the first filter of the chain.
+	 * 
+	 * @param t The type of filter used.
+	 * @param window The amount of samples used to calculate the filtered data.
+	 * @return The new filter, which can be read independently from the rest of the chain.
+	 */
+	public Filter add(Type t, int window){
+		synchronized (lock) {
+			return add(t, window, filters.isEmpty() ? null : filters.get(filters.size()-1));
+		}
+	}
+	
+	/**
+	 * Adds a filter to the chain.
+	 * 
+	 * @param t The type of filter used.
+	 * @param window The amount of samples used to calculate the filtered data.
+	 * @param input The filter whose filtered data will feed the new filter. Must already be part of the chain.
+	 * If null, the new filter is fed by the sensor.
+	 * @return The new filter, which can be read independently from the rest of the chain.
+	 */
+	public Filter add(Type t, int window, Filter input){
+		Filter f = new Filter(t, window);
+		f.chain = this;
+		synchronized (lock) {
+			int inputFill = 0;
+			if(input != null){
+				if(input.chain != this)
+					throw new IllegalArgumentException("The input filter is not part of this chain.");
+				inputFill = fills.get(filters.indexOf(input));
+			}
+			filters.add(f);
+			inputs.add(input);
+			channels.add((t == Type.RED || t == Type.GREEN || t == Type.BLUE) && sample.length >= 3 ? t.ordinal() - Type.RED.ordinal() : 0);
+			fills.add(inputFill + f.getWindow());
+			fill = Math.max(fill, inputFill + f.getWindow());
+		}
+		return f;
+	}
+	
+	/**
+	 * Fetches a new sensor reading and gives it to every filter of the chain.
+	 * Only one reading is fetched, even if the sensor returns several channels.
+	 * This should not be called on a chain registered to a SensorSampler.
+	 */
+	public void addSample(){
+		synchronized (lock) {
+			s.fetchSample(sample, 0);
+			timestamp = System.nanoTime();
+			for(int i = 0; i < filters.size(); i++){
+				Filter input = inputs.get(i);
+				filters.get(i).addSample(input == null ? sample[channels.get(i)] : (float) input.getFilteredData(), timestamp);
+			}
+			for(int i = 0; i < listeners.size(); i++){
+				listeners.get(i).sampleAdded(this);
+			}
+		}
+	}
+	
+	/**
+	 * Adds a listener that will be called after every new reading.
+	 * 
+	 * @param listener The listener.
+	 */
+	public void addListener(SampleListener listener){
+		synchronized (lock) {
+			listeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Returns the latest unfiltered reading of the sensor.
+	 * Should only be called by the thread adding the samples, such as from a SampleListener.
+	 * 
+	 * @param channel The channel of the reading. 0 for sensors that return a single value.
+	 * @return The latest reading for that channel.
+	 */
+	public float getSample(int channel){
+		return sample[channel];
+	}
+	
+	/**
+	 * Returns the time at which the latest reading was fetched.
+	 * Should only be called by the thread adding the samples, such as from a SampleListener.
+	 * 
+	 * @return The time of the latest reading, from System.nanoTime().
+	 */
+	public long getTimestamp(){
+		return timestamp;
+	}
+	
+	/**
+	 * Returns the time interval between two readings, as the SensorSampler currently reads the sensor.
+	 * It can get shorter if the same sensor is registered again at a faster rate.
+	 * 
+	 * @return The time interval between two readings in ns, or 0 if the chain is not registered to a SensorSampler.
+	 */
+	public long getPeriod(){
+		return period;
+	}
+	
+	/**
+	 * Returns how far the filtered data of a filter of the chain lags behind the sensor, adding up the lag of every filter feeding it.
+	 * The filtered data describes what the sensor measured about this long before getTimestamp().
+	 * 
+	 * @param f The filter. Must be part of this chain.
+	 * @return The lag of the filtered data in ns, or 0 if the chain is not registered to a SensorSampler.
+	 */
+	public long getDelay(Filter f){
+		double samples = 0;
+		synchronized (lock) {
+			while(f != null){
+				samples += f.getDelay();
+				f = inputs.get(filters.indexOf(f));
+			}
+		}
+		return (long) (samples * period);
+	}
+	
+	//the amount of readings needed to replace the samples of a filter of the chain and of all the filters feeding it
+	int getFill(Filter f){
+		synchronized (lock) {
+			return fills.get(filters.indexOf(f));
+		}
+	}
+	
+	/**
+	 * Adds new readings separated by a time interval until the samples of every filter of the chain have been replaced.
+	 * If the chain is registered to a SensorSampler, waits until the sampler has replaced them instead.
+	 * 
+	 * @param period The time interval between two readings.
+	 */
+	public void saturateSamples(int period){
+		if(filters.isEmpty())
+			return;
+		for(int i=0; i<fill; i++){
+			if(sampled)
+				filters.get(0).addSample();
+			else
+				addSample();
+			try{Thread.sleep(period);}catch(Exception e){}
+		}
+	}
+	
+	/**
+	 * Returns the filtered data of the last filter of the chain.
+	 * 
+	 * @return The filtered data, or NaN if the chain has no filter.
+	 */
+	public double getFilteredData(){
+		Filter last;
+		synchronized (lock) {
+			if(filters.isEmpty())
+				return Double.NaN;
+			last = filters.get(filters.size()-1);
+		}
+		return last.getFilteredData();
+	}
+	
+	/**
+	 * Returns a string representation of the chain's current value which fits the EV3's LCD screen.
+	 * 
+	 * @return The chain's current value, in string form.
+	 */
+	public String toString(){
+		return Utility.truncate("Chain: " + this.getFilteredData(), 16);
+	}
+}
@@ -0,0 +1,381 @@
+package finalProject;
+
+import java.util.Arrays;
+
+import finalProject.Filter.Type;
+import lejos.robotics.SampleProvider;
+
+/**
+ * The class responsible for calculating the filtered data of a Filter.
+ * Each type of filter has its own strategy, which stores its samples in the layout it needs
+ * and updates the filtered data as samples are added, without going through a switch on the type.
+ * A strategy belongs to a single Filter, which synchronizes every call to it.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+abstract class FilterStrategy {
+
+	//member variables
+	private float[] reading;
+
+	/**
+	 * Adds a sample and calculates the new filtered data.
+	 *
+	 * @param sample The new sample.
+	 * @param time The time at which the sample was read, from System.nanoTime().
+	 * @return The new filtered data.
+	 */
+	abstract double add(float sample, long time);
+
+	/**
+	 * Reads a new sample from a sensor, adds it and calculates the new filtered data.
+	 * By default, only the first value of the reading is used.
+	 *
+	 * @param s The sensor (and mode) to read.
+	 * @param time The time at which the sample is read, from System.nanoTime().
+	 * @return The new filtered data.
+	 */
+	double fetch(SampleProvider s, long time){
+		if(reading == null)
+			reading = new float[s.sampleSize()];
+		s.fetchSample(reading, 0);
+		return add(reading[0], time);
+	}
+
+	/**
+	 * Returns how far the filtered data lags behind the samples, such as the time it takes to follow a step.
+	 * By default, the filtered data does not lag.
+	 *
+	 * @return The lag, in samples.
+	 */
+	double delay(){
+		return 0;
+	}
+
+	/**
+	 * Creates the strategy for a type of filter.
+	 *
+	 * @param t The type of filter.
+	 * @param window The amount of samples used to calculate the filtered data. Already adjusted to the type.
+	 * @param interleaved True if the filter reads its sensor by itself. Only matters for the RGB types, whose readings are then kept whole.
+	 * @return The strategy.
+	 */
+	static FilterStrategy create(Type t, int window, boolean interleaved){
+		switch(t){
+		case AVERAGE:
+			return new Average(window);
+		case MEDIAN:
+			return new Median(window);
+		case DERIVATIVE:
+			return new Derivative();
+		case EMA:
+			return new EMA(window);
+		case KALMAN:
+			return new Kalman();
+		case HAMPEL:
+			return new Hampel(window);
+		case RED:
+		case GREEN:
+		case BLUE:
+			return interleaved ? new Channel(window, t.ordinal() - Type.RED.ordinal(), 3) : new Channel(window, 0, 1);
+		default:
+			return new Empty();
+		}
+	}
+
+
+	/**
+	 * The average of the samples, ignoring infinite readings, kept as a running sum.
+	 */
+	static class Average extends FilterStrategy{
+
+		private final float[] samples;
+		private int index;
+		private double sum;
+		private int infinities;
+
+		Average(int window){
+			samples = new float[window];
+		}
+
+		double add(float sample, long time){
+			int i = index;
+			float old = samples[i];
+			samples[i] = sample;
+			index = (index + 1) % samples.length;
+
+			//resynchronize the running sum once per pass over the samples so rounding errors and NaNs cannot accumulate
+			if(i == samples.length - 1){
+				sum = 0;
+				infinities = 0;
+				for(float f : samples){
+					if(f == Float.POSITIVE_INFINITY)
+						infinities++;
+					else
+						sum += f;
+				}
+			}
+			else{
+				//remove the sample that was overwritten from the running sum
+				if(old == Float.POSITIVE_INFINITY)
+					infinities--;
+				else
+					sum -= old;
+				if(sample == Float.POSITIVE_INFINITY)
+					infinities++;
+				else
+					sum += sample;
+			}
+
+			int n = samples.length - infinities;
+			return (n == 0) ? Float.POSITIVE_INFINITY : sum / n;
+		}
+
+		//the average is centered on the middle sample
+		double delay(){
+			return (samples.length - 1) / 2.0;
+		}
+	}
+
+
+	/**
+	 * The median of the samples, kept with a sorted copy of the samples.
+	 */
+	static class Median extends FilterStrategy{
+
+		protected final float[] samples;
+		protected final float[] sorted;
+		protected int index;
+		protected double median;
+
+		Median(int window){
+			samples = new float[window];
+			sorted = new float[window];
+		}
+
+		double add(float sample, long time){
+			float old = samples[index];
+			samples[index] = sample;
+			index = (index + 1) % samples.length;
+
+			int i = Arrays.binarySearch(sorted, old);
+			if(i < 0){
+				//the sorted copy is out of sync with the samples, so rebuild it
+				System.arraycopy(samples, 0, sorted, 0, samples.length);
+				Arrays.sort(sorted);
+			}
+			else{
+				//slide the new value towards its place, like a single step of an insertion sort
+				while(i < sorted.length - 1 && Float.compare(sorted[i+1], sample) < 0){
+					sorted[i] = sorted[i+1];
+					i++;
+				}
+				while(i > 0 && Float.compare(sorted[i-1], sample) > 0){
+					sorted[i] = sorted[i-1];
+					i--;
+				}
+				sorted[i] = sample;
+			}
+
+			median = sorted[sorted.length/2];
+			if(sorted.length % 2 == 0){
+				median = (median + sorted[sorted.length/2 - 1]) / 2;
+			}
+			return median;
+		}
+
+		//a step only reaches the median once it fills half the samples. The outliers rejected by Hampel filters are the first samples of a step, so they lag as much
+		double delay(){
+			return (samples.length - 1) / 2.0;
+		}
+	}
+
+
+	/**
+	 * The latest sample, replaced by the median if it is an outlier.
+	 */
+	static class Hampel extends Median{
+
+		private static final double THRESHOLD = 3, MAD_SCALE = 1.4826;	//the scale makes the MAD comparable to a standard deviation
+
+		Hampel(int window){
+			super(window);
+		}
+
+		double add(float sample, long time){
+			super.add(sample, time);
+			if(!Double.isInfinite(median) && Math.abs(sample - median) > THRESHOLD * MAD_SCALE * medianDeviation())
+				return median;
+			return sample;
+		}
+
+		//calculates the median absolute deviation of the samples from the sorted copy, without allocating anything.
+		//the deviations are taken in increasing order by walking outwards from the median
+		private double medianDeviation(){
+			int n = sorted.length;
+			int lo = (n - 1) / 2, hi = lo + 1;
+			double deviation = 0, previous = 0;
+			for(int k = 0; k <= n / 2; k++){
+				previous = deviation;
+				if(hi >= n || (lo >= 0 && median - sorted[lo] <= sorted[hi] - median)){
+					deviation = median - sorted[lo];
+					lo--;
+				}
+				else{
+					deviation = sorted[hi] - median;
+					hi++;
+				}
+			}
+			return (n % 2 == 0) ? (deviation + previous) / 2 : deviation;
+		}
+	}
+
+
+	/**
+	 * The rate of change per second between the latest two samples.
+	 */
+	static class Derivative extends FilterStrategy{
+
+		private float previous;
+		private long previousTime;
+		private boolean first = true;
+
+		double add(float sample, long time){
+			long dt = time - previousTime;
+			double result = (dt > 0 && !first) ? (sample - previous) * 1e9 / dt : 0;
+			previous = sample;
+			previousTime = time;
+			first = false;
+			return result;
+		}
+
+		//the rate of change is the one halfway between the two samples
+		double delay(){
+			return 0.5;
+		}
+	}
+
+
+	/**
+	 * The latest sample.
+	 */
+	static class Empty extends FilterStrategy{
+
+		double add(float sample, long time){
+			return sample;
+		}
+	}
+
+
+	/**
+	 * The first valid (below 1) sample of one RGB channel.
+	 * When the filter reads its sensor by itself, the whole RGB readings are stored interleaved and only one channel is used.
+	 * When it is fed by a FilterChain, it only receives its own channel.
+	 */
+	static class Channel extends FilterStrategy{
+
+		private final float[] samples;
+		private final int offset, stride;
+		private int index;
+
+		Channel(int window, int offset, int stride){
+			this.samples = new float[window * stride];
+			this.offset = offset;
+			this.stride = stride;
+		}
+
+		double add(float sample, long time){
+			samples[index + offset] = sample;
+			index = (index + stride) % samples.length;
+			return calculate();
+		}
+
+		double fetch(SampleProvider s, long time){
+			if(stride == 1)
+				return super.fetch(s, time);
+			s.fetchSample(samples, index);
+			index = (index + stride) % samples.length;
+			return calculate();
+		}
+
+		private double calculate(){
+			for(int j = offset; j < samples.length; j += stride){
+				if(samples[j] < 1)
+					return samples[j];
+			}
+			return 0;
+		}
+	}
+
+
+	/**
+	 * An exponential moving average of the samples, ignoring infinite readings.
+	 */
+	static class EMA extends FilterStrategy{
+
+		private final double alpha;
+		private double estimate = Float.POSITIVE_INFINITY;
+
+		EMA(int window){
+			alpha = 2.0 / (window + 1);
+		}
+
+		double add(float sample, long time){
+			if(sample == Float.POSITIVE_INFINITY || Float.isNaN(sample))
+				return estimate;
+			if(estimate == Float.POSITIVE_INFINITY)
+				estimate = sample;	//first usable sample
+			else
+				estimate += alpha * (sample - estimate);
+			return estimate;
+		}
+
+		//the weights of the samples decay geometrically, so their mean age is (1-alpha)/alpha
+		double delay(){
+			return (1 - alpha) / alpha;
+		}
+	}
+
+
+	/**
+	 * A scalar Kalman filter, ignoring infinite readings.
+	 */
+	static class Kalman extends FilterStrategy{
+
+		private static final double DEFAULT_PROCESS_NOISE = 1e-2, DEFAULT_MEASUREMENT_NOISE = 1e-4;
+		private double estimate = Float.POSITIVE_INFINITY;
+		private double variance, gain = 1;
+		private double processNoise = DEFAULT_PROCESS_NOISE, measurementNoise = DEFAULT_MEASUREMENT_NOISE;
+		private long lastTime;
+
+		void setNoise(double processNoise, double measurementNoise){
+			this.processNoise = processNoise;
+			this.measurementNoise = measurementNoise;
+		}
+
+		double add(float sample, long time){
+			if(sample == Float.POSITIVE_INFINITY || Float.isNaN(sample))
+				return estimate;
+			if(estimate == Float.POSITIVE_INFINITY){
+				//first usable sample
+				estimate = sample;
+				variance = measurementNoise;
+			}
+			else{
+				//the value drifts by the process noise per second since the last sample, then the sample is weighed against the estimate
+				variance += processNoise * Math.max(time - lastTime, 0) / 1e9;
+				gain = variance / (variance + measurementNoise);
+				estimate += gain * (sample - estimate);
+				variance *= 1 - gain;
+			}
+			lastTime = time;
+			return estimate;
+		}
+
+		//like an exponential moving average whose weight is the latest gain
+		double delay(){
+			return (gain > 0) ? (1 - gain) / gain : 0;
+		}
+	}
+}
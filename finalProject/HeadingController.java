@@ -0,0 +1,78 @@
+package finalProject;
+
+/**
+ * The class responsible for keeping the robot pointed at its destination while it drives.
+ * It is a PID controller which turns the heading error into the rate at which the robot should turn.
+ * The derivative term uses the angular velocity measured by the odometer instead of the derivative of the error,
+ * so that it does not kick when the target angle jumps to a new waypoint.
+ * Its gains are set by Navigator.setHeadingGains() from other threads, so it is only called under the Navigator's lock.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+class HeadingController {
+
+	//member variables
+	private double kp, ki, kd;
+	private double integral;
+
+
+	/**
+	 * Constructor for HeadingController.
+	 *
+	 * @param kp The proportional gain, in (rad/s) per rad of error.
+	 * @param ki The integral gain, in (rad/s) per rad*s of error.
+	 * @param kd The derivative gain, in (rad/s) per rad/s of angular velocity.
+	 */
+	HeadingController(double kp, double ki, double kd){
+		setGains(kp, ki, kd);
+	}
+
+	/**
+	 * Changes the gains of the controller. The accumulated error is kept.
+	 *
+	 * @param kp The proportional gain, in (rad/s) per rad of error.
+	 * @param ki The integral gain, in (rad/s) per rad*s of error.
+	 * @param kd The derivative gain, in (rad/s) per rad/s of angular velocity.
+	 */
+	void setGains(double kp, double ki, double kd){
+		this.kp = kp;
+		this.ki = ki;
+		this.kd = kd;
+	}
+
+	/**
+	 * Forgets the accumulated error. Must be called whenever the robot starts driving towards a destination.
+	 */
+	void reset(){
+		integral = 0;
+	}
+
+	/**
+	 * Calculates the rate at which the robot should turn to correct its heading.
+	 * The error is not accumulated while the output is limited in the same direction, so that the integral does not wind up.
+	 *
+	 * @param error The angle to turn by to face the target, in rads between -pi and pi. Positive counterclockwise.
+	 * @param angularVelocity The angular velocity of the robot, in rad/s. Positive counterclockwise.
+	 * @param dt The time since the last update, in s.
+	 * @param limit The highest rate the robot can turn at, in rad/s.
+	 * @return The rate at which the robot should turn, in rad/s between -limit and limit. Positive counterclockwise.
+	 */
+	double update(double error, double angularVelocity, double dt, double limit){
+		double candidate = integral + error * dt;
+		double output = kp * error + ki * candidate - kd * angularVelocity;
+		if(Math.abs(output) <= limit || Math.signum(error) != Math.signum(output))
+			integral = candidate;
+		output = kp * error + ki * integral - kd * angularVelocity;
+		return Math.max(-limit, Math.min(limit, output));
+	}
+
+	/**
+	 * Returns the error accumulated by the integral term.
+	 *
+	 * @return The integral of the heading error, in rad*s.
+	 */
+	double getIntegral(){
+		return integral;
+	}
+}
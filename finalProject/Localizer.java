@@ -10,7 +10,7 @@ import lejos.hardware.sensor.EV3UltrasonicSensor;
  * @author Mathieu
  * @version 1.0
  */
-public class Localizer {
+public class Localizer implements EdgeListener{
 	
 	//member variables
 	private EV3UltrasonicSensor usSensor;
@@ -19,10 +19,21 @@ public class Localizer {
 	private int corner;
 	private Navigator navigator;
 	private Odometer odometer;
-	private final static double LIGHT_THRESHOLD = 0.05, US_THRESHOLD = 0.4, US_CORRECTION = 0/*-0.08*/, LIGHT_CORRECTION = 0.06, NOISE_MARGIN = 0.04, SQUARE_LENGTH = 30.67;
+	private FilterChain usChain;
+	private Filter usFilter;
+	private Filter lightFilter;
+	private EdgeDetector lineDetector;
+	private double[] lineAngles = new double[4];
+	private volatile int lines;
+	private volatile boolean detecting;
+	//the light threshold is a rate of change of the light reading per second
+	private final static double LIGHT_THRESHOLD = 2.5, US_THRESHOLD = 0.4, US_CORRECTION = 0/*-0.08*/, LIGHT_CORRECTION = 0.06, NOISE_MARGIN = 0.04, SQUARE_LENGTH = 30.67;
 	private boolean recorded1 = false, recorded2 = true;
 	private double theta1, theta2;
-	private final static int COOLDOWN = 300, MAX_LENGTH = 10;
+	private final static int COOLDOWN = 300, MAX_LENGTH = 10, US_PERIOD = 20, LIGHT_PERIOD = 20;
+	//how much each measurement may be wrong, as variances in cm^2 and rad^2. The robot is only roughly in its corner before the us localization
+	private final static double CORNER_VARIANCE = 25, US_VARIANCE = 1, US_ANGLE_VARIANCE = Math.pow(Math.PI/90, 2),
+			LIGHT_VARIANCE = 0.25, LIGHT_ANGLE_VARIANCE = Math.pow(Math.PI/180, 2);
 	
 	/**
 	 * Constructor for Localizer.
@@ -33,14 +44,25 @@ public class Localizer {
 	 * @param colorSensor The color sensor.
 	 * @param sensorDistance The distance between the color sensor and the center of rotation of the robot.
 	 * @param corner The corner the robots starts at. 1 for lower left, 2 for lower right, 3 for upper right, 4 for upper left.
+	 * @param sampler The sensor sampler that will read the sensors.
 	 */
-	public Localizer(Navigator navigator, Odometer odometer, EV3UltrasonicSensor usSensor, EV3ColorSensor colorSensor, double sensorDistance, int corner){
+	public Localizer(Navigator navigator, Odometer odometer, EV3UltrasonicSensor usSensor, EV3ColorSensor colorSensor, double sensorDistance, int corner, SensorSampler sampler){
 		this.navigator = navigator;
 		this.odometer = odometer;
 		this.SENSOR_DISTANCE = sensorDistance;
 		this.colorSensor = colorSensor;
 		this.usSensor = usSensor;
 		this.corner = corner-1;
+		if(usSensor != null){
+			//spikes and zero readings are rejected first, so a short average is enough to smooth the rest
+			usChain = sampler.register(usSensor.getDistanceMode(), US_PERIOD);
+			usFilter = usChain.add(Filter.Type.AVERAGE, 3, usChain.add(Filter.Type.HAMPEL, 5, null));
+		}
+		if(colorSensor != null){
+			lightFilter = sampler.register(colorSensor.getRedMode(), LIGHT_PERIOD).add(Filter.Type.DERIVATIVE, 2, null);
+			//a line is entered when the light drops quickly, and left when it rises back quickly
+			lineDetector = new EdgeDetector(lightFilter, -LIGHT_THRESHOLD, LIGHT_THRESHOLD, this);
+		}
 	}
 	
 	/**
@@ -57,15 +79,14 @@ public class Localizer {
 			case US:
 				usLocalization();
 				//find the Y
-				Filter usFilter = new Filter(Filter.Type.AVERAGE, usSensor.getDistanceMode(), 5);
 				navigator.turnTo(corner < 2 ? Math.PI*3/2 : Math.PI/2);
 				navigator.waitForStop();
 				Sound.beep();
 				usFilter.saturateSamples(20);
 				if(corner < 2)
-					odometer.setY(100*usFilter.getFilteredData() - 25);
+					odometer.setY(100*usFilter.getFilteredData() - 25, US_VARIANCE);
 				else
-					odometer.setY(25 - 100*usFilter.getFilteredData() + SQUARE_LENGTH*10);
+					odometer.setY(25 - 100*usFilter.getFilteredData() + SQUARE_LENGTH*10, US_VARIANCE);
 					
 				//find the X
 				navigator.turnTo((corner == 0 || corner == 3) ? Math.PI : 0);
@@ -73,9 +94,9 @@ public class Localizer {
 				Sound.beep();
 				usFilter.saturateSamples(20);
 				if(corner == 0 || corner == 3)
-					odometer.setX(100*usFilter.getFilteredData()-25);
+					odometer.setX(100*usFilter.getFilteredData()-25, US_VARIANCE);
 				else
-					odometer.setX(25 - 100*usFilter.getFilteredData() + SQUARE_LENGTH*10);
+					odometer.setX(25 - 100*usFilter.getFilteredData() + SQUARE_LENGTH*10, US_VARIANCE);
 				
 				break;
 				
@@ -111,7 +132,6 @@ public class Localizer {
 	private void usLocalization(){
 		
 		//find the angle
-		Filter usFilter = new Filter(Filter.Type.AVERAGE, usSensor.getDistanceMode(), 5);
 		double[] angles = new double[2];
 		usFilter.saturateSamples(20);
 		navigator.turnBy(Math.PI*2);
@@ -130,7 +150,7 @@ public class Localizer {
 		}
 
 		//record angle when entering noise margin
-		theta1 = odometer.getTheta();
+		theta1 = usAngle();
 		recorded1 = true;
 		recorded2 = false;
 		
@@ -140,7 +160,7 @@ public class Localizer {
 		}
 		
 		//record angle when exiting noise margin
-		theta2 = odometer.getTheta();
+		theta2 = usAngle();
 		recorded1 = false;
 		recorded2 = true;
 		navigator.pause();
@@ -174,7 +194,7 @@ public class Localizer {
 		}
 		
 		//record angle when entering noise margin
-		theta1 = odometer.getTheta();
+		theta1 = usAngle();
 		recorded1 = true;
 		recorded2 = false;
 		
@@ -185,7 +205,7 @@ public class Localizer {
 		
 		//record angle when exiting noise margin
 		
-		theta2 = odometer.getTheta();
+		theta2 = usAngle();
 		recorded1 = false;
 		recorded2 = true;
 		navigator.pause();
@@ -199,18 +219,23 @@ public class Localizer {
 		
 		Sound.beep();
 		
-		odometer.setTheta((angles[0] < angles[1] ? 225d/180*Math.PI : 45d/180*Math.PI) -(angles[0] + angles[1]) / 2 + odometer.getTheta() + US_CORRECTION + corner*Math.PI/2);
-		odometer.setX((corner == 0 || corner == 3) ? 0 : MAX_LENGTH*SQUARE_LENGTH);
-		odometer.setY(corner < 2 ? 0 : MAX_LENGTH*SQUARE_LENGTH);
+		odometer.setTheta((angles[0] < angles[1] ? 225d/180*Math.PI : 45d/180*Math.PI) -(angles[0] + angles[1]) / 2 + odometer.getTheta() + US_CORRECTION + corner*Math.PI/2, US_ANGLE_VARIANCE);
+		odometer.setX((corner == 0 || corner == 3) ? 0 : MAX_LENGTH*SQUARE_LENGTH, CORNER_VARIANCE);
+		odometer.setY(corner < 2 ? 0 : MAX_LENGTH*SQUARE_LENGTH, CORNER_VARIANCE);
 		
 	}
 	
+	//returns the angle the robot was at when the us samples used by the filter were read, rather than the current angle,
+	//since the robot keeps turning while the filters catch up. Both the Hampel filter and the average lag behind a wall by about half their window,
+	//at the period the sensor is actually read at, since another class may sample it faster
+	private double usAngle(){
+		return odometer.getPose(usFilter.getTimestamp() - usChain.getDelay(usFilter)).getTheta();
+	}
+	
 	//performs a localization using the light sensor by turning 360 deg and detecting 4 lines.
 	private void lightLocalization(){
-		Filter lightFilter = new Filter(Filter.Type.DERIVATIVE, colorSensor.getRedMode(), 2);
-		double[] angles = new double[4];
+		double[] angles = lineAngles;
 		int i=0;
-		long time;
 		int quadrant = (int) (odometer.getTheta() / (Math.PI/2));
 		
 		//turn the the closest 45deg to make sure you dont start near a line
@@ -218,25 +243,21 @@ public class Localizer {
 		navigator.waitForStop();
 		lightFilter.saturateSamples(50);
 		
-		//turn 360 deg to hopefully go over 4 lines
+		//turn 360 deg to hopefully go over 4 lines. The angles are recorded by the line detector
+		lines = 0;
+		detecting = true;
 		navigator.turnBy(Math.PI*2.1);
 		while(navigator.isNavigating()){
+			//wait for the sampler to read the light sensor
 			lightFilter.addSample();
-			//if there is a line
-			if(Math.abs(lightFilter.getFilteredData()) > LIGHT_THRESHOLD){
-				try{angles[i] = odometer.getTheta();}catch(ArrayIndexOutOfBoundsException e){}
+			//beep for every new line
+			while(i < lines){
 				i++;
 				Sound.beep();
-				time = System.currentTimeMillis();
-				while(System.currentTimeMillis() - time < COOLDOWN){
-					lightFilter.addSample();
-					try{Thread.sleep(20);}catch(Exception e){}
-				}
-			}
-			else{
-				try{Thread.sleep(20);}catch(Exception e){}
 			}
 		}
+		detecting = false;
+		i = lines;
 		
 		//if you didnt see all 4 lines
 		if(i != 4){
@@ -252,8 +273,33 @@ public class Localizer {
 		double corrY = (quadrant < 2 ? -1 : 1) * SENSOR_DISTANCE * Math.cos((angles[(1+quadrant)%4] - angles[(3+quadrant)%4]) / 2);
 		double corrT = Math.PI - (angles[(0+quadrant)%4] + angles[(2+quadrant)%4])/2;
 		
-		odometer.setX(corrX + Math.round(odometer.getX() / SQUARE_LENGTH) * SQUARE_LENGTH);
-		odometer.setY(corrY + Math.round(odometer.getY() / SQUARE_LENGTH) * SQUARE_LENGTH);
-		odometer.setTheta(corrT + odometer.getTheta() + LIGHT_CORRECTION);
+		odometer.setX(corrX + Math.round(odometer.getX() / SQUARE_LENGTH) * SQUARE_LENGTH, LIGHT_VARIANCE);
+		odometer.setY(corrY + Math.round(odometer.getY() / SQUARE_LENGTH) * SQUARE_LENGTH, LIGHT_VARIANCE);
+		odometer.setTheta(corrT + odometer.getTheta() + LIGHT_CORRECTION, LIGHT_ANGLE_VARIANCE);
+	}
+	
+	/**
+	 * Records the angle of the robot when the light sensor enters a line during the light localization.
+	 * The angle is the one the robot was at when the sample was read, so it does not depend on how late the detector is called.
+	 * Called by the line detector.
+	 * 
+	 * @param detector The line detector.
+	 * @param time The time at which the line was seen.
+	 */
+	public void risingEdge(EdgeDetector detector, long time){
+		if(detecting){
+			if(lines < lineAngles.length)
+				lineAngles[lines] = odometer.getPose(time).getTheta();
+			lines++;
+		}
+	}
+	
+	/**
+	 * Does nothing, since only entering a line matters.
+	 * 
+	 * @param detector The line detector.
+	 * @param time The time at which the sensor left the line.
+	 */
+	public void fallingEdge(EdgeDetector detector, long time){
 	}
 }
\ No newline at end of file
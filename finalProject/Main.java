@@ -30,11 +30,19 @@ public class Main {
 	//constants
 	//robot constants
 	private static final double TRACK = 16.45, WHEEL_RADIUS = 2.05, SENSOR_DIST_TANGENT = 16.5;
+	private static final double CORRECTION = 1.016;	//the right wheel radius over the left one. Calibrate with testing.OdometryCalibration
 	
 	//field constants
 	private static final double SQUARE_LENGTH = 30.67; 
 	private static final int MAX_LENGTH = 10;
 	
+	//localization constants: the robot only light-localizes when its position or angle may be further off than this (in cm and rads)
+	private static final double MAX_POSITION_ERROR = 2, MAX_ANGLE_ERROR = Math.PI/90;
+	
+	//the detours around obstacles keep 40cm from them, and blending cuts their right-angle corners by about 0.4 times this distance (in cm).
+	//it is about the tightest arc the robot can drive, half its track
+	private static final double DETOUR_BLEND_DISTANCE = 8;
+	
 	//ball tray constants
 	private static final double X_DIST = -1/*3.81*/;
 	
@@ -64,19 +72,21 @@ public class Main {
 		
 		
 		//instantiate classes
-		Odometer odometer = new Odometer(leftMotor, rightMotor, null, TRACK, WHEEL_RADIUS);	//the gyro is null if we dont want to use it
+		SensorSampler sampler = new SensorSampler();
+		Odometer odometer = new Odometer(leftMotor, rightMotor, null, TRACK, WHEEL_RADIUS, CORRECTION, 0);	//the gyro is null if we dont want to use it
 		Navigator navigator = new Navigator(odometer, leftMotor, rightMotor);
-		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor);
-		Localizer localizer = new Localizer(navigator, odometer, usSensor, colorSensor1, SENSOR_DIST_TANGENT, sc);
-		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0);
+		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor, sampler);
+		Localizer localizer = new Localizer(navigator, odometer, usSensor, colorSensor1, SENSOR_DIST_TANGENT, sc, sampler);
+		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0, sampler);
 		Launcher launcher = new Launcher(launchMotor, touchSensor);
 		Aegis aegis = new Aegis(flapsMotor);
-		ColorRecognizer colorRecognizer = new ColorRecognizer(navigator, colorSensor2);
+		ColorRecognizer colorRecognizer = new ColorRecognizer(navigator, colorSensor2, sampler);
 		Display display = new Display(t, new Object[]{odometer, navigator, obstacleAvoider.usFilter});	//set the objects we want to display
 		
 		
 		//start the treads
 		Utility.exit.start();
+		sampler.start();
 		odometer.start();
 		navigator.start();
 		display.start();
@@ -124,7 +134,7 @@ public class Main {
 			//move to the center of the attack zone
 			navigator.travelTo(MAX_LENGTH/2*SQUARE_LENGTH, SQUARE_LENGTH);
 			navigator.waitForStop();
-			localizer.localize(Type.LIGHT);
+			relocalize(localizer, odometer);
 			
 			//calculate the ball locations from wifi data
 			double[] endLocation = new double[2]; 	//the location where the robot will grab the balls
@@ -191,14 +201,9 @@ public class Main {
 					Utility.reverse(avoidLocReversed);
 				}
 				else{
-					for(double[] checkPoint : avoidLocations){
-						navigator.travelTo(checkPoint);
-						navigator.waitForStop();
-						navigator.travelTo(lightLocation);
-						navigator.waitForStop();
-					}
+					navigator.followPath(append(avoidLocations, lightLocation), true, DETOUR_BLEND_DISTANCE).await();
 				}
-				localizer.localize(Type.LIGHT);
+				relocalize(localizer, odometer);
 				navigator.travelTo(preLocation);
 				navigator.waitForStop();
 				
@@ -214,22 +219,26 @@ public class Main {
 				
 				//go back to the shooting zone and shoot
 				navigator.setSpeed(400);
-				navigator.travelTo(preLocation, false);
-				navigator.waitForStop();
-				navigator.travelTo(lightLocation, false);
-				navigator.waitForStop();
-				for(double[] checkPoint : avoidLocReversed){
-					navigator.travelTo(checkPoint);
-					navigator.waitForStop();
-				}
-				navigator.travelTo(MAX_LENGTH/2*SQUARE_LENGTH, SQUARE_LENGTH);
-				navigator.waitForStop();
-				localizer.localize(Type.LIGHT);
+				navigator.followPath(new double[][]{preLocation, lightLocation}, false).await();
+				navigator.followPath(append(avoidLocReversed, new double[]{MAX_LENGTH/2*SQUARE_LENGTH, SQUARE_LENGTH}), true, DETOUR_BLEND_DISTANCE).await();
+				relocalize(localizer, odometer);
 				navigator.turnToward(MAX_LENGTH/2*SQUARE_LENGTH, MAX_LENGTH*SQUARE_LENGTH);
 				navigator.waitForStop();
 				launcher.shoot();
 			}
 		}
 	}
-
+	
+	//returns a copy of the path with one more waypoint at its end
+	private static double[][] append(double[][] path, double[] waypoint){
+		double[][] result = Arrays.copyOf(path, path.length + 1);
+		result[path.length] = waypoint;
+		return result;
+	}
+	
+	//light-localizes only if the odometer is not certain enough of its position
+	private static void relocalize(Localizer localizer, Odometer odometer){
+		if(odometer.getPositionError() > MAX_POSITION_ERROR || odometer.getAngleError() > MAX_ANGLE_ERROR)
+			localizer.localize(Type.LIGHT);
+	}
 }
@@ -0,0 +1,60 @@
+package finalProject;
+
+/**
+ * The class responsible for planning the speed of the wheels during a move, so that the robot reaches its destination as fast as possible without slipping.
+ * The speed follows a trapezoid: it rises at a constant acceleration, cruises at the maximum speed, then falls at the same
+ * acceleration to stop exactly at the destination. If the move is too short to reach the maximum speed, the cruise is skipped.
+ * The rise is done by the regulators of the motors, whose acceleration must be set to the same value. The profile gives the
+ * highest speed from which the robot can still stop in the remaining distance, taking into account the time before the next update.
+ * All speeds and distances are in degrees of rotation of the wheels, so the same profile works for moves and rotations.
+ * The speeds are changed by Navigator.setSpeed() while the navigator thread plans with them, so both only use a profile under the Navigator's lock.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+class MotionProfile {
+
+	//member variables
+	private double maxSpeed, minSpeed;
+	private final double acceleration, latency;
+
+
+	/**
+	 * Constructor for MotionProfile.
+	 *
+	 * @param maxSpeed The cruise speed, in deg/s.
+	 * @param minSpeed The lowest speed, used to cover the last few degrees before the destination. In deg/s.
+	 * @param acceleration The acceleration of the motors, in deg/s^2.
+	 * @param latency The longest time the speed is kept before it is updated, in s.
+	 */
+	MotionProfile(double maxSpeed, double minSpeed, double acceleration, double latency){
+		this.acceleration = acceleration;
+		this.latency = latency;
+		setSpeeds(maxSpeed, minSpeed);
+	}
+
+	/**
+	 * Changes the cruise and lowest speeds of the profile.
+	 *
+	 * @param maxSpeed The cruise speed, in deg/s.
+	 * @param minSpeed The lowest speed, in deg/s. It is never more than the cruise speed.
+	 */
+	void setSpeeds(double maxSpeed, double minSpeed){
+		this.maxSpeed = maxSpeed;
+		this.minSpeed = Math.min(minSpeed, maxSpeed);
+	}
+
+	/**
+	 * Calculates the speed to use with the remaining distance of the move. It is the speed v for which
+	 * v*latency + (v^2 - minSpeed^2) / (2*acceleration) = remaining, which is the distance travelled before the next update
+	 * plus the distance needed to slow down to the lowest speed. It is never more than the cruise speed or less than the lowest speed.
+	 *
+	 * @param remaining The distance left before the destination, in degrees of rotation of the wheels.
+	 * @return The speed of the wheels, in deg/s.
+	 */
+	double speed(double remaining){
+		double al = acceleration * latency;
+		double v = Math.sqrt(al*al + minSpeed*minSpeed + 2*acceleration*Math.max(remaining, 0)) - al;
+		return Math.max(minSpeed, Math.min(maxSpeed, v));
+	}
+}
@@ -1,4 +1,7 @@
 package finalProject;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+
 import lejos.hardware.motor.EV3LargeRegulatedMotor;
 
 /**
@@ -13,14 +16,29 @@ public class Navigator extends Thread{
 	private Odometer odometer;
 	private EV3LargeRegulatedMotor leftMotor, rightMotor;
 	private double targetX, targetY, targetT, relativeT;
+	private double startX, startY;	//the start of the segment leading to the target, when following a path
 	private static final double TOLERANCE = 1.0, LOOSE_ANGLE_TOLERANCE = Math.PI / 60, HARD_ANGLE_TOLERANCE = Math.PI / 180;
-	private int FORWARD_SPEED = 400, ROTATE_SPEED = 200, CORRECT_SPEED = 10;
+	private int FORWARD_SPEED = 400, ROTATE_SPEED = 200;
+	//while driving, the heading controller corrects the angle and the robot only turns on the spot if it is off by more than this
+	private static final double DRIVE_ANGLE_TOLERANCE = Math.PI / 6;
+	private static final double KP = 4, KI = 1, KD = 0.2;
 	private static final double MIN_SPEED_RATIO = 0.2;
-	private static final int PERIOD = 50;
+	private static final int PERIOD = 50, ACCELERATION = 1500;
+	//by default, the robot starts turning towards the next waypoint this far before the current one (in cm), unless the corner is sharper than BLEND_ANGLE.
+	//BLEND_ANGLE is a bit more than a right angle, so that right angles are blended even when the robot is slightly off its path
+	private static final double BLEND_DISTANCE = 10, BLEND_ANGLE = Math.toRadians(100);
 	private Object lock;
-	private boolean navigating;
+	private volatile boolean navigating;
 	private boolean forward;
-	private boolean turning;
+	private volatile boolean turning;
+	private Completion motion;
+	private ArrayDeque<double[]> path;
+	private double blendDistance;
+	private boolean blending;
+	private MotionProfile forwardProfile, rotateProfile;
+	private HeadingController heading;
+	private boolean driving;
+	private PrintWriter log;
 	
 	
 	/**
@@ -42,6 +60,18 @@ public class Navigator extends Thread{
 		targetT = Double.NaN;
 		relativeT = Double.NaN;
 		lock = new Object();
+		motion = new Completion();
+		motion.complete(false);
+		path = new ArrayDeque<double[]>();
+		blendDistance = 0;
+		blending = false;
+		//the motors speed up at the acceleration of the profiles, which slow them down
+		leftMotor.setAcceleration(ACCELERATION);
+		rightMotor.setAcceleration(ACCELERATION);
+		forwardProfile = new MotionProfile(maxSpeed(FORWARD_SPEED), FORWARD_SPEED * MIN_SPEED_RATIO, ACCELERATION, 2 * PERIOD / 1000.0);
+		rotateProfile = new MotionProfile(maxSpeed(ROTATE_SPEED), ROTATE_SPEED * MIN_SPEED_RATIO, ACCELERATION, 2 * PERIOD / 1000.0);
+		heading = new HeadingController(KP, KI, KD);
+		driving = false;
 	}
 	
 	
@@ -50,29 +80,39 @@ public class Navigator extends Thread{
 	public void run(){
 		
 		long navigateStart, navigateEnd;
-		double lastTheta = 0, distance = 0, angleTolerance;
-		int leftCorrection = 0, rightCorrection = 0;
+		double lastTheta = 0, distance = 0, angleTolerance, error, turnRate;
 		int rotateSpeed, forwardSpeed;
+		Pose pose;
 		
 		while(true){
 			navigateStart = System.currentTimeMillis();
+			//read the position once, so that the whole cycle works with the same odometer update, predicted to now
+			pose = odometer.getPredictedPose();
 			
 			synchronized (lock) {
 					
 				//recalculate targetT
-				calculateTargetT();
+				calculateTargetT(pose);
 				
 				//the navigator should be used only if there is a destination and we are navigating towards it
 				if(navigating){
-					leftMotor.setAcceleration(1500);
-					rightMotor.setAcceleration(1500);
 					
 					if(!Double.isNaN(targetT) || !Double.isNaN(targetX)){
 						//the navigator prioritizes correcting absolute angles, then position, then relative angles.
 						
 						if(!Double.isNaN(targetX)){
-							distance = Math.sqrt(Math.pow(odometer.getX() - targetX, 2) + Math.pow(odometer.getY() - targetY, 2));
-							angleTolerance = LOOSE_ANGLE_TOLERANCE;
+							distance = Math.sqrt(Math.pow(pose.getX() - targetX, 2) + Math.pow(pose.getY() - targetY, 2));
+							//close to a waypoint with a smooth enough corner: aim for the next one without slowing down
+							if(!path.isEmpty() && distance < blendDistance && cornerAngle(pose.getX(), pose.getY(), targetX, targetY, path.peek()) <= BLEND_ANGLE){
+								nextWaypoint(pose);
+								blending = true;
+								distance = Math.sqrt(Math.pow(pose.getX() - targetX, 2) + Math.pow(pose.getY() - targetY, 2));
+							}
+							//close to the destination, small position errors make the angle to it swing: only turn on the spot
+							//if the robot would miss the destination by more than half the tolerance, since stopping to turn costs time and slips the wheels
+							angleTolerance = Math.max(LOOSE_ANGLE_TOLERANCE, Math.atan(TOLERANCE / 2 / distance));
+							if(driving)
+								angleTolerance = Math.max(angleTolerance, DRIVE_ANGLE_TOLERANCE);
 						}
 						else{
 							angleTolerance = HARD_ANGLE_TOLERANCE;
@@ -80,65 +120,85 @@ public class Navigator extends Thread{
 						
 						
 						//check if theta is off-course
-						if(!Double.isNaN(targetT) && Utility.angleDiff(odometer.getTheta(), targetT) > angleTolerance){
+						if(!Double.isNaN(targetT) && Utility.angleDiff(pose.getTheta(), targetT) > angleTolerance){
 							navigating = true;
-							turning = true;
-							//correct the angle by turning
-							rotateSpeed = (int) (Math.min(Utility.angleDiff(odometer.getTheta(), targetT) + MIN_SPEED_RATIO, 1) * ROTATE_SPEED);
-							leftMotor.setSpeed(rotateSpeed);
-							rightMotor.setSpeed(rotateSpeed);
-							//calculate the most efficient direction to turn to
-							if(odometer.getTheta() - targetT > 0 && odometer.getTheta() - targetT < Math.PI || odometer.getTheta() - targetT < -Math.PI){
-								//turn right
-								leftMotor.forward();
-								rightMotor.backward();
+							//too close to the waypoint to reach it along an arc: turn on the spot instead
+							if(distance < blendDistance)
+								blending = false;
+							turning = !blending;
+							driving = blending;
+							if(blending){
+								//keep moving along an arc instead of turning on the spot, steering towards the segment which leads to the target
+								forwardSpeed = (int) forwardProfile.speed(toWheel(distance + pathDistance(pose)));
+								rotateSpeed = (int) (forwardSpeed * Math.max(-1, Math.min(1, blendCurvature(pose) * odometer.getTrack() / 2)));
+								if(forward)
+									drive(forwardSpeed - rotateSpeed, forwardSpeed + rotateSpeed);
+								else
+									drive(-forwardSpeed - rotateSpeed, -forwardSpeed + rotateSpeed);
 							}
 							else{
-								//turn left
-								leftMotor.backward();;
-								rightMotor.forward();;
+								//correct the angle by turning
+								rotateSpeed = (int) rotateProfile.speed(toWheel(Utility.angleDiff(pose.getTheta(), targetT) * odometer.getTrack() / 2));
+								leftMotor.setSpeed(rotateSpeed);
+								rightMotor.setSpeed(rotateSpeed);
+								//calculate the most efficient direction to turn to
+								if(Angle.difference(pose.getTheta(), targetT) < 0){
+									//turn right
+									leftMotor.forward();
+									rightMotor.backward();
+								}
+								else{
+									//turn left
+									leftMotor.backward();;
+									rightMotor.forward();;
+								}
 							}
 						}
 						//check if the position is off-course
 						else if(!Double.isNaN(targetX) &&  distance > TOLERANCE){
 							navigating = true;
 							turning = false;
-							forwardSpeed = (int) (Math.min(distance/10 + MIN_SPEED_RATIO, 1) * FORWARD_SPEED);
-							if(Utility.angleDiff(odometer.getTheta(), targetT) > HARD_ANGLE_TOLERANCE){
-								if(odometer.getTheta() > targetT || (targetT - odometer.getTheta()) > Math.PI*2-LOOSE_ANGLE_TOLERANCE){
-									//correct towards left
-									leftCorrection = 0;
-									rightCorrection = CORRECT_SPEED;
-								}
-								else{
-									//correct towards right
-									leftCorrection = CORRECT_SPEED;
-									rightCorrection = 0;
-								}
-							}
-							if(forward){
-								leftMotor.setSpeed(forwardSpeed - leftCorrection);
-								rightMotor.setSpeed(forwardSpeed - rightCorrection);
-								leftMotor.forward();
-								rightMotor.forward();
-							}
-							else{
-								leftMotor.setSpeed(forwardSpeed - rightCorrection);
-								rightMotor.setSpeed(forwardSpeed - leftCorrection);
-								leftMotor.backward();
-								rightMotor.backward();
+							blending = false;
+							if(!driving){
+								heading.reset();
+								driving = true;
 							}
+							//slow down only for the end of the path, or for the next corner which is too sharp to blend
+							forwardSpeed = (int) forwardProfile.speed(toWheel(distance + pathDistance(pose)));
+							//steer with the difference between the wheel speeds, at most stopping the inner wheel
+							error = Angle.difference(pose.getTheta(), targetT);
+							turnRate = heading.update(error, pose.getAngularVelocity(), PERIOD / 1000.0, Math.toRadians(forwardSpeed) * odometer.getWheelRadius() * 2 / odometer.getTrack());
+							rotateSpeed = (int) toWheel(turnRate * odometer.getTrack() / 2);
+							if(forward)
+								drive(forwardSpeed - rotateSpeed, forwardSpeed + rotateSpeed);
+							else
+								drive(-forwardSpeed - rotateSpeed, -forwardSpeed + rotateSpeed);
+							if(log != null)
+								log.println(navigateStart + " " + error + " " + heading.getIntegral() + " " + pose.getAngularVelocity() + " " + turnRate + " " + forwardSpeed + " " + rotateSpeed);
+						}
+						//at a waypoint whose corner is too sharp to blend: stop there and turn towards the next one
+						else if(!path.isEmpty()){
+							turning = false;
+							blending = false;
+							driving = false;
+							leftMotor.stop(true);
+							rightMotor.stop();
+							nextWaypoint(pose);
 						}
 						//nothing to correct: the robot is at its destination
 						else{
 							navigating = false;
+							blending = false;
 							turning = false;
+							driving = false;
 							forward = true;
 							leftMotor.stop(true);
 							rightMotor.stop();
 							targetX = Double.NaN;
 							targetY = Double.NaN;
 							targetT = Double.NaN;
+							motion.complete(false);
+							lock.notifyAll();
 						}
 					}
 					
@@ -151,32 +211,34 @@ public class Navigator extends Thread{
 							turning = false;
 							leftMotor.stop(true);
 							rightMotor.stop();
+							motion.complete(false);
+							lock.notifyAll();
 						}
 						//else turn and update the relative angle
 						else{
 							navigating = true;
 							turning = true;
-							rotateSpeed = (int) (Math.min(Math.abs(relativeT) + MIN_SPEED_RATIO, 1) * ROTATE_SPEED);
+							rotateSpeed = (int) rotateProfile.speed(toWheel(Math.abs(relativeT) * odometer.getTrack() / 2));
 							leftMotor.setSpeed(rotateSpeed);
 							rightMotor.setSpeed(rotateSpeed);
 							if(relativeT > 0){
 								//turn left
 								leftMotor.backward();
 								rightMotor.forward();
-								relativeT -= Utility.angleDiff(odometer.getTheta(), lastTheta);
 							}
 							else{
 								//turn right
 								leftMotor.forward();
 								rightMotor.backward();
-								relativeT += Utility.angleDiff(odometer.getTheta(), lastTheta);
 							}
+							//remove the angle turned since the last cycle, in whichever direction it was
+							relativeT -= Angle.difference(lastTheta, pose.getTheta());
 						}
 					}
 				}
 			}
 			
-			lastTheta = odometer.getTheta();
+			lastTheta = pose.getTheta();
 			
 			// this ensures that the navigator only runs once every period
 			navigateEnd = System.currentTimeMillis();
@@ -192,17 +254,83 @@ public class Navigator extends Thread{
 	}
 	
 	//calculates the angle theta (from the positive X axis) between the robot's current position and its target position
-	private void calculateTargetT(){
+	private void calculateTargetT(Pose pose){
 		//only calculate if the position and angle are not NaN and if the robot isnt in the right position
-		if(!Double.isNaN(targetT) && !Double.isNaN(targetX) && !Double.isNaN(targetY)  &&  Math.abs(odometer.getX() - targetX) > TOLERANCE || Math.abs(odometer.getY() - targetY) > TOLERANCE){
-			targetT = Math.atan2(targetY - odometer.getY(), targetX - odometer.getX());
-			if(targetT < 0)
-				targetT += Math.PI * 2;
-			if(!forward)
-				targetT = (targetT + Math.PI) % (Math.PI * 2);
+		if(!Double.isNaN(targetT) && !Double.isNaN(targetX) && !Double.isNaN(targetY)  &&  Math.abs(pose.getX() - targetX) > TOLERANCE || Math.abs(pose.getY() - targetY) > TOLERANCE){
+			targetT = Angle.normalize(Math.atan2(targetY - pose.getY(), targetX - pose.getX()) + (forward ? 0 : Math.PI));
 		}
 	}
 	
+	//makes the next waypoint of the path the target of the navigator
+	private void nextWaypoint(Pose pose){
+		double[] waypoint = path.poll();
+		startX = targetX;
+		startY = targetY;
+		targetX = waypoint[0];
+		targetY = waypoint[1];
+		targetT = 0.0;
+		calculateTargetT(pose);
+	}
+	
+	//calculates the length of the path after the current target, up to the first corner which is too sharp to blend
+	private double pathDistance(Pose pose){
+		double result = 0, x = targetX, y = targetY, heading, nextHeading;
+		if(blendDistance == 0)
+			return 0;
+		heading = Math.atan2(targetY - pose.getY(), targetX - pose.getX());
+		for(double[] waypoint : path){
+			nextHeading = Math.atan2(waypoint[1] - y, waypoint[0] - x);
+			if(Angle.distance(heading, nextHeading) > BLEND_ANGLE)
+				break;
+			result += Math.sqrt(Math.pow(waypoint[0] - x, 2) + Math.pow(waypoint[1] - y, 2));
+			heading = nextHeading;
+			x = waypoint[0];
+			y = waypoint[1];
+		}
+		return result;
+	}
+	
+	//calculates the curvature of the arc which brings the robot on the segment leading to the target, positive to the left (in 1/cm).
+	//the robot aims at a point of the segment blendDistance ahead of it, like a pure pursuit controller
+	private double blendCurvature(Pose pose){
+		double dx = targetX - startX, dy = targetY - startY, length = Math.sqrt(dx*dx + dy*dy);
+		if(length == 0)
+			return 0;
+		//the projection of the robot on the segment, then the point to aim at
+		double along = ((pose.getX() - startX)*dx + (pose.getY() - startY)*dy) / length;
+		along = Math.min(Math.max(along, 0) + blendDistance, length);
+		double aimX = startX + dx * along / length - pose.getX(), aimY = startY + dy * along / length - pose.getY();
+		double lookahead = Math.sqrt(aimX*aimX + aimY*aimY);
+		if(lookahead == 0)
+			return 0;
+		//the direction of motion is opposite to theta when going backward
+		double alpha = Angle.difference(pose.getTheta() + (forward ? 0 : Math.PI), Math.atan2(aimY, aimX));
+		return 2 * Math.sin(alpha) / lookahead;
+	}
+	
+	//calculates the change of direction at (x, y) between the segment coming from (fromX, fromY) and the one going to the waypoint
+	private double cornerAngle(double fromX, double fromY, double x, double y, double[] waypoint){
+		return Angle.distance(Math.atan2(y - fromY, x - fromX), Math.atan2(waypoint[1] - y, waypoint[0] - x));
+	}
+	
+	//converts a distance travelled by a wheel into degrees of rotation of the wheel
+	private double toWheel(double distance){
+		return Math.toDegrees(distance / odometer.getWheelRadius());
+	}
+	
+	//limits a speed to what the motors can keep up with the current battery voltage
+	private double maxSpeed(int speed){
+		return Math.min(speed, Math.min(leftMotor.getMaxSpeed(), rightMotor.getMaxSpeed()));
+	}
+	
+	//sets the speed of both wheels, in deg/s. Negative speeds turn the wheel backward
+	private void drive(int leftSpeed, int rightSpeed){
+		leftMotor.setSpeed(Math.abs(leftSpeed));
+		rightMotor.setSpeed(Math.abs(rightSpeed));
+		if(leftSpeed < 0) leftMotor.backward(); else leftMotor.forward();
+		if(rightSpeed < 0) rightMotor.backward(); else rightMotor.forward();
+	}
+	
 	
 	
 	/**
@@ -211,9 +339,11 @@ public class Navigator extends Thread{
 	 * Cancels any previous move commands.
 	 * 
 	 * @param theta The absolute angle to turn to. In rads between 0 and 2pi, counterclockwise from the positive x axis.
+	 * @return The completion of this move, which is done when the robot faces the angle.
 	 */
-	public void turnTo(double theta){
+	public Completion turnTo(double theta){
 		synchronized (lock) {
+			restart();
 			navigating = true;
 			forward = true;
 			turning = true;
@@ -221,6 +351,7 @@ public class Navigator extends Thread{
 			targetX = Double.NaN;
 			targetY = Double.NaN;
 			relativeT = Double.NaN;
+			return motion;
 		}
 	}
 	
@@ -230,9 +361,11 @@ public class Navigator extends Thread{
 	 * Cancels any previous move commands.
 	 * 
 	 * @param theta The angle to turn by. In rads between 0 and 2pi, positive for left, negative for right.
+	 * @return The completion of this move, which is done when the robot has turned by the angle.
 	 */
-	public void turnBy(double theta){
+	public Completion turnBy(double theta){
 		synchronized (lock) {
+			restart();
 			navigating = true;
 			turning = true;
 			forward = true;
@@ -240,6 +373,7 @@ public class Navigator extends Thread{
 			targetY = Double.NaN;
 			targetT = Double.NaN;
 			relativeT = theta;
+			return motion;
 		}
 	}
 	
@@ -250,16 +384,17 @@ public class Navigator extends Thread{
 	 * 
 	 * @param x The x coordinate of the point the robot should face.
 	 * @param y The y coordinate of the point the robot should face.
+	 * @return The completion of this move, which is done when the robot faces the point.
 	 */
-	public void turnToward(double x, double y){
+	public Completion turnToward(double x, double y){
 		synchronized (lock) {
 			targetX = x;
 			targetY = y;
 			targetT = 0.0;
 			relativeT = Double.NaN;
-			calculateTargetT();
+			calculateTargetT(odometer.getPose());
 		}
-		turnTo(targetT);
+		return turnTo(targetT);
 	}
 	
 	/**
@@ -270,9 +405,11 @@ public class Navigator extends Thread{
 	 * 
 	 * @param x The x coordinate of the target destination.
 	 * @param y The y coordinate of the target destination.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void travelTo(double x, double y){
+	public Completion travelTo(double x, double y){
 		synchronized (lock) {
+			restart();
 			navigating = true;
 			turning = false;
 			forward = true;
@@ -280,7 +417,8 @@ public class Navigator extends Thread{
 			targetY = y;
 			targetT = 0.0;
 			relativeT = Double.NaN;
-			calculateTargetT();
+			calculateTargetT(odometer.getPose());
+			return motion;
 		}
 	}
 
@@ -293,9 +431,11 @@ public class Navigator extends Thread{
 	 * @param x The x coordinate of the target destination.
 	 * @param y The y coordinate of the target destination.
 	 * @param forward True for forward, false for backward.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void travelTo(double x, double y, boolean forward){
+	public Completion travelTo(double x, double y, boolean forward){
 		synchronized (lock) {
+			restart();
 			navigating = true;
 			turning = false;
 			this.forward = forward;
@@ -303,7 +443,8 @@ public class Navigator extends Thread{
 			targetY = y;
 			targetT = 0.0;
 			relativeT = Double.NaN;
-			calculateTargetT();
+			calculateTargetT(odometer.getPose());
+			return motion;
 		}
 	}
 
@@ -314,9 +455,10 @@ public class Navigator extends Thread{
 	 * Cancels any previous move commands.
 	 * 
 	 * @param destination The array representing the target destination in the form {x, y}.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void travelTo(double[] destination){
-		travelTo(destination[0], destination[1]);
+	public Completion travelTo(double[] destination){
+		return travelTo(destination[0], destination[1]);
 	}
 	
 	/**
@@ -327,9 +469,10 @@ public class Navigator extends Thread{
 	 * 
 	 * @param destination The array representing the target destination in the form {x, y}.
 	 * @param forward True for forward, false for backward.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void travelTo(double[] destination, boolean forward){
-		travelTo(destination[0], destination[1], forward);
+	public Completion travelTo(double[] destination, boolean forward){
+		return travelTo(destination[0], destination[1], forward);
 	}
 	
 	/**
@@ -338,15 +481,18 @@ public class Navigator extends Thread{
 	 * 
 	 * @param x The x coordinate of the target destination.
 	 * @param y The y coordinate of the target destination.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void setTarget(double x, double y){
+	public Completion setTarget(double x, double y){
 		synchronized (lock) {
+			restart();
 			forward = true;
 			targetX = x;
 			targetY = y;
 			targetT = 0.0;
 			relativeT = Double.NaN;
-			calculateTargetT();
+			calculateTargetT(odometer.getPose());
+			return motion;
 		}
 	}
 	
@@ -357,15 +503,18 @@ public class Navigator extends Thread{
 	 * @param x The x coordinate of the target destination.
 	 * @param y The y coordinate of the target destination.
 	 * @param forward True for forward, false for backward.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void setTarget(double x, double y, boolean forward){
+	public Completion setTarget(double x, double y, boolean forward){
 		synchronized (lock) {
+			restart();
 			this.forward = forward;
 			targetX = x;
 			targetY = y;
 			targetT = 0.0;
 			relativeT = Double.NaN;
-			calculateTargetT();
+			calculateTargetT(odometer.getPose());
+			return motion;
 		}
 	}
 	
@@ -374,9 +523,10 @@ public class Navigator extends Thread{
 	 * Use move() to start the navigator.
 	 * 
 	 * @param destination The array representing the target destination in the form {x, y}.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void setTarget(double[] destination){
-		setTarget(destination[0], destination[1]);
+	public Completion setTarget(double[] destination){
+		return setTarget(destination[0], destination[1]);
 	}
 	
 	/**
@@ -385,15 +535,78 @@ public class Navigator extends Thread{
 	 * 
 	 * @param destination The array representing the target destination in the form {x, y}.
 	 * @param forward True for forward, false for backward.
+	 * @return The completion of this move, which is done when the robot reaches its destination.
 	 */
-	public void setTarget(double[] destination, boolean forward){
-		setTarget(destination[0], destination[1], forward);
+	public Completion setTarget(double[] destination, boolean forward){
+		return setTarget(destination[0], destination[1], forward);
+	}
+	
+	/**
+	 * Moves the robot through each of the waypoints in order, without stopping at the intermediate ones.
+	 * The robot starts turning towards the next waypoint the given distance before reaching the current one and keeps its speed,
+	 * unless the corner is too sharp: then it stops at the waypoint and turns on itself.
+	 * A right-angle corner is cut by about 0.4 times the blend distance, so paths which must stay clear of an obstacle should use a short one.
+	 * The robot cannot drive arcs much tighter than half its track, so shorter distances than that cut corners less precisely.
+	 * Cancels any previous move commands.
+	 * 
+	 * @param waypoints The waypoints in the form {x1, y1}, {x2, y2} ... The robot stops at the last one (within ~1cm).
+	 * @param forward True for forward, false for backward.
+	 * @param blendDistance How far before a waypoint the robot starts turning towards the next one, in cm. 0 to stop at every waypoint.
+	 * @return The completion of this move, which is done when the robot reaches the last waypoint.
+	 */
+	public Completion followPath(double[][] waypoints, boolean forward, double blendDistance){
+		synchronized (lock) {
+			//an empty path is already done: stop where the robot is
+			if(waypoints.length == 0){
+				restart();
+				targetX = Double.NaN;
+				targetY = Double.NaN;
+				targetT = Double.NaN;
+				relativeT = Double.NaN;
+				pause();
+				motion.complete(false);
+				return motion;
+			}
+			travelTo(waypoints[0], forward);
+			this.blendDistance = Math.max(blendDistance, 0);
+			for(int i = 1; i < waypoints.length; i++)
+				path.add(waypoints[i]);
+			return motion;
+		}
+	}
+	
+	/**
+	 * Moves the robot through each of the waypoints in order, without stopping at the intermediate ones.
+	 * The robot starts turning towards the next waypoint shortly before reaching the current one and keeps its speed,
+	 * unless the corner is too sharp: then it stops at the waypoint and turns on itself.
+	 * Cancels any previous move commands.
+	 * 
+	 * @param waypoints The waypoints in the form {x1, y1}, {x2, y2} ... The robot stops at the last one (within ~1cm).
+	 * @param forward True for forward, false for backward.
+	 * @return The completion of this move, which is done when the robot reaches the last waypoint.
+	 */
+	public Completion followPath(double[][] waypoints, boolean forward){
+		return followPath(waypoints, forward, BLEND_DISTANCE);
+	}
+	
+	/**
+	 * Moves the robot forward through each of the waypoints in order, without stopping at the intermediate ones.
+	 * The robot starts turning towards the next waypoint shortly before reaching the current one and keeps its speed,
+	 * unless the corner is too sharp: then it stops at the waypoint and turns on itself.
+	 * Cancels any previous move commands.
+	 * 
+	 * @param waypoints The waypoints in the form {x1, y1}, {x2, y2} ... The robot stops at the last one (within ~1cm).
+	 * @return The completion of this move, which is done when the robot reaches the last waypoint.
+	 */
+	public Completion followPath(double[][] waypoints){
+		return followPath(waypoints, true);
 	}
 	
 	/**
 	 * Stops the robot dead in its tracks until either move(), travelTo() or turnTo() is called.
 	 * Does not cancel previous target destinations: the robot will keep going to the same destination if the move() method is called.
 	 * The navigator will however keep recalculating targetTheta while it is paused.
+	 * The completion of the current move is not done until the robot reaches its destination.
 	 */
 	public void pause(){
 		synchronized (lock) {
@@ -401,6 +614,8 @@ public class Navigator extends Thread{
 			rightMotor.stop();
 			navigating = false;
 			turning = false;
+			driving = false;
+			lock.notifyAll();
 		}
 	}
 	
@@ -408,14 +623,27 @@ public class Navigator extends Thread{
 	/**
 	 * Unpauses the navigator if it was previously paused.
 	 * Does nothing if the navigator was not paused.
+	 * 
+	 * @return The completion of the current move, which is already done if there is no destination.
 	 */
-	public void move(){
+	public Completion move(){
 		synchronized (lock) {
 			if(!Double.isNaN(targetT) || !Double.isNaN(targetX) || !Double.isNaN(relativeT))
 				navigating = true;
+			return motion;
 		}
 	}
 	
+	//cancels the current move and starts a new one. Must be called while holding the lock
+	private void restart(){
+		motion.complete(true);
+		motion = new Completion();
+		path.clear();
+		blendDistance = 0;
+		blending = false;
+		driving = false;
+	}
+	
 	/**
 	 * Returns true if and only if the robot is currently moving via the navigator.
 	 * 
@@ -483,18 +711,54 @@ public class Navigator extends Thread{
 	}
 	
 	/**
-	 * Waits until the navigator stops navigating.
+	 * Waits until the navigator stops navigating, either because the robot reached its destination or because it was paused.
+	 * The thread sleeps until the navigator signals it, so that the processor is left to the odometer and the sensors.
+	 * Returns early if the thread is interrupted, leaving its interrupt flag set.
 	 */
 	public void waitForStop(){
-		while(navigating);
+		synchronized (lock) {
+			while(navigating){
+				try{lock.wait();}catch(InterruptedException e){Thread.currentThread().interrupt(); return;}
+			}
+		}
 	}
 	
 	public boolean isTurning(){
 		return turning;
 	}
 	
+	/**
+	 * Changes the gains of the PID controller which keeps the robot pointed at its destination while it drives.
+	 * The controller gives the rate at which the robot turns, in rad/s.
+	 * 
+	 * @param kp The proportional gain, in (rad/s) per rad of heading error.
+	 * @param ki The integral gain, in (rad/s) per rad*s of heading error.
+	 * @param kd The derivative gain, in (rad/s) per rad/s of angular velocity.
+	 */
+	public void setHeadingGains(double kp, double ki, double kd){
+		synchronized (lock) {
+			heading.setGains(kp, ki, kd);
+		}
+	}
+	
+	/**
+	 * Records the response of the heading controller while the robot drives, once per period.
+	 * Each line holds the time (in ms), the heading error (in rads), its integral (in rad*s), the angular velocity (in rad/s),
+	 * the output of the controller (in rad/s), the forward speed and the correction of the wheels (in deg/s).
+	 * 
+	 * @param log The writer to record to, or null to stop recording. It is not flushed or closed by the navigator.
+	 */
+	public void setLog(PrintWriter log){
+		synchronized (lock) {
+			this.log = log;
+		}
+	}
+	
 	public void setSpeed(int speed){
-		FORWARD_SPEED = speed;
+		synchronized (lock) {
+			FORWARD_SPEED = speed;
+			forwardProfile.setSpeeds(maxSpeed(FORWARD_SPEED), FORWARD_SPEED * MIN_SPEED_RATIO);
+		}
 	}
 	
 }
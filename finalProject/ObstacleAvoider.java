@@ -24,7 +24,6 @@ public class ObstacleAvoider{
 	private static final double MIN_DISTANCE = 0.3;
 	private static final int AVOID_DISTANCE = 40;
 	private static final int PERIOD = 10;
-	private boolean isPolling;
 	
 	
 	/**
@@ -33,12 +32,14 @@ public class ObstacleAvoider{
 	 * @param navigator The robot's navigator.
 	 * @param odometer The robot's odometer.
 	 * @param usSensor The US sensor that will detect the walls in front of the robot.
+	 * @param sampler The sensor sampler that will read the US sensor.
 	 */
-	public ObstacleAvoider(Navigator navigator, Odometer odometer, EV3UltrasonicSensor usSensor){
+	public ObstacleAvoider(Navigator navigator, Odometer odometer, EV3UltrasonicSensor usSensor, SensorSampler sampler){
 		this.navigator = navigator;
 		this.odometer = odometer;
-		this.usFilter = new Filter(Type.AVERAGE, usSensor.getDistanceMode(), 5);
-		this.isPolling = true;
+		//spikes and zero readings are rejected first, so a short EMA is enough to smooth the rest
+		FilterChain usChain = sampler.register(usSensor.getDistanceMode(), PERIOD);
+		this.usFilter = usChain.add(Type.EMA, 3, usChain.add(Type.HAMPEL, 5, null));
 	}
 	
 	/**
@@ -52,34 +53,30 @@ public class ObstacleAvoider{
 	 * avoid any obstacle, it will return {{x, y}} where x, y are the initial destination coordinates.
 	 */
 	public double[][] avoid(boolean direction){
-		isPolling = true;
-		(new Thread(new Runnable(){
-			public void run(){
-				while(isPolling){
-					usFilter.saturateSamples(PERIOD);
-				}
-			}
-		})).start();
 		double distance = usFilter.getFilteredData();
 		ArrayList<double[]> checkPoints = new ArrayList<double[]>();
 		int sign = direction ? 1 : -1;
 		boolean notNearWall;
+		Pose pose;
 		usFilter.saturateSamples(0);
 		while(navigator.isNavigating()){
-			notNearWall = odometer.getX() > SQUARE_LENGTH*0.5 && odometer.getX() < SQUARE_LENGTH*(MAX_LENGTH-0.5)
-							&& odometer.getY() > SQUARE_LENGTH*0.5 && odometer.getY() < SQUARE_LENGTH*(MAX_LENGTH-0.5);
+			pose = odometer.getPose();
+			notNearWall = pose.getX() > SQUARE_LENGTH*0.5 && pose.getX() < SQUARE_LENGTH*(MAX_LENGTH-0.5)
+							&& pose.getY() > SQUARE_LENGTH*0.5 && pose.getY() < SQUARE_LENGTH*(MAX_LENGTH-0.5);
 			if(distance < MIN_DISTANCE && distance > 0 && !navigator.isTurning() && notNearWall){
 				navigator.pause();
 				Sound.beep();
 				double[] destination = {navigator.getTargetX(), navigator.getTargetY()};
 				navigator.turnBy(Math.PI/2 * sign);
 				navigator.waitForStop();
-				navigator.travelTo(odometer.getX() + AVOID_DISTANCE * Math.cos(odometer.getTheta()), odometer.getY() + AVOID_DISTANCE * Math.sin(odometer.getTheta()));
+				pose = odometer.getPose();
+				navigator.travelTo(pose.getX() + AVOID_DISTANCE * Math.cos(pose.getTheta()), pose.getY() + AVOID_DISTANCE * Math.sin(pose.getTheta()));
 				checkPoints.add(new double[]{navigator.getTargetX(), navigator.getTargetY()});
 				navigator.waitForStop();
 				navigator.turnBy(-Math.PI/2 * sign);
 				navigator.waitForStop();
-				navigator.travelTo(odometer.getX() + 1.5*AVOID_DISTANCE * Math.cos(odometer.getTheta()), odometer.getY() + 1.5*AVOID_DISTANCE * Math.sin(odometer.getTheta()));
+				pose = odometer.getPose();
+				navigator.travelTo(pose.getX() + 1.5*AVOID_DISTANCE * Math.cos(pose.getTheta()), pose.getY() + 1.5*AVOID_DISTANCE * Math.sin(pose.getTheta()));
 				checkPoints.add(new double[]{navigator.getTargetX(), navigator.getTargetY()});
 				navigator.waitForStop();
 				navigator.setTarget(destination);
@@ -88,7 +85,6 @@ public class ObstacleAvoider{
 			distance = usFilter.getFilteredData();
 			navigator.move();
 		}
-		isPolling = false;
 		return checkPoints.toArray(new double[checkPoints.size()][]);
 	}
 	
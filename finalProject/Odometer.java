@@ -1,5 +1,6 @@
 package finalProject;
 
+import java.util.concurrent.locks.LockSupport;
 
 import lejos.hardware.motor.EV3LargeRegulatedMotor;
 import lejos.hardware.sensor.EV3GyroSensor;
@@ -14,13 +15,31 @@ public class Odometer extends Thread {
 	
 	//member variables
 	private double x, y, theta;
-	private final double TRACK, WHEEL_RADIUS;
-	private final static double CORRECTION = 1.016;
-	private final static int PERIOD = 15;	//the maximum speed the odometer can operate at
+	private final double TRACK, WHEEL_RADIUS, CORRECTION;
+	private final static double DEFAULT_CORRECTION = 1.016;
+	//the time between updates depends on how fast the robot turns: from MIN_PERIOD when it spins fast to PERIOD when it moves,
+	//and IDLE_PERIOD when it is stopped. ANGLE_STEP is the angle the robot should turn by in a single update
+	private final static int PERIOD = 15, MIN_PERIOD = 5, IDLE_PERIOD = 60;
+	private final static double ANGLE_STEP = Math.PI/360;
+	private final static int HISTORY = 128;	//the amount of past updates kept, over half a second even when turning fast
+	private final static double SMOOTHING = 0.05;	//the time constant of the speed and acceleration filters, in s
 	private final EV3LargeRegulatedMotor leftMotor;
 	private final EV3LargeRegulatedMotor rightMotor;
 	private final EV3GyroSensor gyroSensor;
+	private final double gyroWeight;
+	private final static double DEFAULT_GYRO_WEIGHT = 0.9;
+	private final static double GYRO_TOLERANCE = Math.PI/18;	//the most the gyro and the tachos can disagree on in a single update
+	//how much the distance measured by a wheel varies (in cm^2 per cm traveled), and how much the angle measured by the gyro varies (in rad^2 per rad turned)
+	private final static double WHEEL_NOISE = 0.002, GYRO_NOISE = 0.0005;
+	private double varX, varY, varTheta, covXY, covXTheta, covYTheta;
+	//the variances of a position and angle which have not been measured yet: anywhere on the field, and any angle
+	private final static double UNKNOWN_VARIANCE = 1e5, UNKNOWN_ANGLE_VARIANCE = Math.PI*Math.PI/3;
 	private Object lock;
+	private volatile Pose pose;
+	private volatile long cycles, overruns, maxJitter, totalJitter;
+	private final double[] historyX, historyY, historyTheta, historyVelocity;
+	private final long[] historyTime;
+	private int historyIndex, historySize;
 
 	
 	/**
@@ -33,15 +52,44 @@ public class Odometer extends Thread {
 	 * @param wheelRadius The radius of the wheels.
 	 */
 	public Odometer(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor, EV3GyroSensor gyroSensor, double track, double wheelRadius) {
+		this(leftMotor, rightMotor, gyroSensor, track, wheelRadius, DEFAULT_CORRECTION, DEFAULT_GYRO_WEIGHT);
+	}
+	
+	/**
+	 * Constructor for an odometer whose wheels are not the same size, such as one calibrated with testing.OdometryCalibration,
+	 * and which blends the gyro sensor with the motors to calculate the angle.
+	 * Every update, the change in angle measured by the gyro and the one measured by the motors are averaged with the given weight.
+	 * The gyro does not slip like the wheels do, while the motors do not drift like the gyro does, especially when the robot is stopped.
+	 * 
+	 * @param leftMotor The left motor.
+	 * @param rightMotor The right motor.
+	 * @param gyroSensor The gyro sensor if there is one. If left as null, the angle will be calculated from the motors.
+	 * @param track The distance between the two wheels.
+	 * @param wheelRadius The radius of the left wheel.
+	 * @param correction The radius of the right wheel divided by the radius of the left wheel.
+	 * @param gyroWeight How much the gyro is trusted compared to the motors, between 0 (only the motors) and 1 (only the gyro). Ignored without a gyro.
+	 */
+	public Odometer(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor, EV3GyroSensor gyroSensor, double track, double wheelRadius, double correction, double gyroWeight) {
 		x = 0.0;
 		y = 0.0;
 		theta = 0.0;
 		lock = new Object();
+		pose = new Pose(x, y, theta, System.nanoTime(), 0);
+		varX = UNKNOWN_VARIANCE;
+		varY = UNKNOWN_VARIANCE;
+		varTheta = UNKNOWN_ANGLE_VARIANCE;
+		historyX = new double[HISTORY];
+		historyY = new double[HISTORY];
+		historyTheta = new double[HISTORY];
+		historyVelocity = new double[HISTORY];
+		historyTime = new long[HISTORY];
 		this.leftMotor = leftMotor;
 		this.rightMotor = rightMotor;
 		this.gyroSensor = gyroSensor;
 		this.TRACK = track;
 		this.WHEEL_RADIUS = wheelRadius;
+		this.CORRECTION = correction;
+		this.gyroWeight = (gyroSensor == null) ? 0 : Math.max(0, Math.min(gyroWeight, 1));
 		if(gyroSensor != null)
 			gyroSensor.reset();
 	}
@@ -50,21 +98,29 @@ public class Odometer extends Thread {
 	// run method (required for Thread)
 	public void run() {
 		//initialize variables
-		long updateStart, updateEnd;
+		long deadline = System.nanoTime(), now, jitter, time, lastTime = deadline, period;
 		int tachoL = 0;
 		int tachoR = 0;
 		int currentTachoL = 0;
 		int currentTachoR = 0;
 		int lastTachoL = 0;
 		int lastTachoR = 0;
-		double distance = 0;
-		double deltaTheta = 0;
+		double distance = 0, ratio, cos, sin;
+		double deltaTheta = 0, gyroTheta = 0, weight;
+		double dt, alpha, velocity = 0, angularVelocity = 0, acceleration = 0, angularAcceleration = 0, lastVelocity, lastAngularVelocity;
 		float[] sample = new float[1];
+		float lastGyro = 0;
 
 		while (true) {
-			updateStart = System.currentTimeMillis();
+			//record how late this cycle started compared to its deadline
+			jitter = System.nanoTime() - deadline;
+			if(jitter > maxJitter)
+				maxJitter = jitter;
+			totalJitter += jitter;
+			cycles++;
 			
 			//get tacho changes for both motors
+			time = System.nanoTime();
 			currentTachoL = leftMotor.getTachoCount();
 			currentTachoR = rightMotor.getTachoCount();
 			tachoL = currentTachoL - lastTachoL;
@@ -78,87 +134,199 @@ public class Odometer extends Thread {
 				//calculate the change in distance
 				distance = (tachoR*CORRECTION + tachoL)/360d * Math.PI * WHEEL_RADIUS;
 				
-				//calculate the change in theta. Use the gyro sensor if there is one, else use the tachos
-				if(gyroSensor == null){
-					deltaTheta = (tachoR*CORRECTION - tachoL)/(360d * TRACK) * 2 * Math.PI * WHEEL_RADIUS;
-				}
-				else{
+				//calculate the change in theta from the tachos
+				deltaTheta = (tachoR*CORRECTION - tachoL)/(360d * TRACK) * 2 * Math.PI * WHEEL_RADIUS;
+				
+				//blend in the change measured by the gyro sensor if there is one
+				weight = 0;
+				if(gyroSensor != null){
+					//the gyro gives the total angle turned since it was reset, in degrees counterclockwise
 					gyroSensor.getAngleMode().fetchSample(sample, 0);
-					//convert the angle to our notation: between 0 and 2pi, counterclockwise
-					sample[0] %= 360;
-					if(sample[0] < 0){
-						sample[0] = 360 + sample[0];
+					gyroTheta = Math.PI*(sample[0] - lastGyro)/180;
+					lastGyro = sample[0];
+					//ignore the gyro while the wheels are stopped, since it can only be drifting,
+					//and if it gives a reading too far off, since it is messed up
+					if((tachoL != 0 || tachoR != 0) && Math.abs(gyroTheta - deltaTheta) < GYRO_TOLERANCE){
+						deltaTheta = gyroWeight * gyroTheta + (1 - gyroWeight) * deltaTheta;
+						weight = gyroWeight;
 					}
-					sample[0] = (float) (Math.PI*(sample[0])/180);
-					deltaTheta = Math.signum(tachoR - tachoL) * Utility.angleDiff(sample[0], theta);
-					//if the gyro sensor is messed up and gives a reading too far off, read the tachos instead
-					if(Math.abs(deltaTheta) > Math.PI/2){
-						deltaTheta = (tachoR - tachoL)/(360d * TRACK) * 2 * Math.PI * WHEEL_RADIUS;
-					}
-					
 				}
 				
-				//update x, y and theta
-				x += distance * Math.cos(theta + deltaTheta/2);
-				y += distance * Math.sin(theta + deltaTheta/2);
-				theta += deltaTheta;
+				//update how uncertain the position is, then x, y and theta. The average angle is used by both, so only look it up once
+				cos = Angle.cos(theta + deltaTheta/2);
+				sin = Angle.sin(theta + deltaTheta/2);
+				propagate(tachoL/360d * 2 * Math.PI * WHEEL_RADIUS, tachoR*CORRECTION/360d * 2 * Math.PI * WHEEL_RADIUS,
+						cos, sin, distance, weight, gyroTheta);
+				//the robot moved along a circular arc, which is the same as moving a bit less in a straight line along the average angle
+				ratio = Utility.arcRatio(deltaTheta);
+				x += distance * ratio * cos;
+				y += distance * ratio * sin;
 				
 				//theta must be between 0 and 2pi rads
-				theta %= Math.PI*2;
-				if(theta < 0)
-					theta += 2*Math.PI;
+				theta = Angle.normalize(theta + deltaTheta);
+				
+				//update the speeds and accelerations, smoothed since the tachos are only precise to a degree
+				if(time - lastTime > 0){
+					dt = (time - lastTime) / 1e9;
+					alpha = dt / (SMOOTHING + dt);
+					lastVelocity = velocity;
+					lastAngularVelocity = angularVelocity;
+					velocity += alpha * (distance / dt - velocity);
+					angularVelocity += alpha * (deltaTheta / dt - angularVelocity);
+					acceleration += alpha * ((velocity - lastVelocity) / dt - acceleration);
+					angularAcceleration += alpha * ((angularVelocity - lastAngularVelocity) / dt - angularAcceleration);
+				}
+				
+				//publish the new pose all at once, and remember it
+				pose = new Pose(x, y, theta, time, velocity, angularVelocity, acceleration, angularAcceleration);
+				record(pose);
 			}
+			lastTime = time;
 			
-			// this ensures that the odometer only runs once every period
-			updateEnd = System.currentTimeMillis();
-			if (updateEnd - updateStart < PERIOD) {
-				try {
-					Thread.sleep(PERIOD - (updateEnd - updateStart));
-				} catch (InterruptedException e) {
-					// nothing to do here
-				}
+			//update more often when turning fast, and rarely when stopped so that the other threads get the processor
+			if(tachoL == 0 && tachoR == 0)
+				period = IDLE_PERIOD * 1000000L;
+			else
+				period = (long) Math.max(MIN_PERIOD * 1000000L, Math.min(PERIOD * 1000000L, ANGLE_STEP / Math.abs(angularVelocity) * 1e9));
+			
+			// this ensures that the odometer runs once every period, measured from the deadlines so it does not drift
+			deadline += period;
+			now = System.nanoTime();
+			if(now - deadline >= 0){
+				//the update took longer than a period, so start again from now instead of trying to catch up
+				overruns++;
+				deadline = now;
+			}
+			else{
+				LockSupport.parkNanos(deadline - now);
+				//parkNanos can return early, so make sure the deadline is reached
+				while(System.nanoTime() - deadline < 0)
+					LockSupport.parkNanos(deadline - System.nanoTime());
 			}
 		}
 	}
 	
 	
+	//updates the covariance of x, y and theta after moving, by linearizing the update of the position.
+	//the errors come from the distance of each wheel, which may slip, and from the gyro if it was used. Must be called while holding the lock
+	//the average angle of the movement is given by its cos and sin
+	private void propagate(double distanceL, double distanceR, double cos, double sin, double distance, double weight, double gyroTheta) {
+		//how the new position changes with the previous angle
+		double a = -distance * sin, c = distance * cos;
+		//how the new position and angle change with the distance of each wheel. Part of the angle comes from the gyro instead
+		double thetaR = (1 - weight) / TRACK, thetaL = -thetaR;
+		double xR = 0.5 * cos + a * thetaR/2, xL = 0.5 * cos + a * thetaL/2;
+		double yR = 0.5 * sin + c * thetaR/2, yL = 0.5 * sin + c * thetaL/2;
+		double noiseR = WHEEL_NOISE * Math.abs(distanceR), noiseL = WHEEL_NOISE * Math.abs(distanceL);
+		
+		//the previous uncertainty carried over by the movement
+		varX += 2*a*covXTheta + a*a*varTheta;
+		covXY += a*covYTheta + c*covXTheta + a*c*varTheta;
+		covXTheta += a*varTheta;
+		varY += 2*c*covYTheta + c*c*varTheta;
+		covYTheta += c*varTheta;
+		
+		//plus the new uncertainty of the wheels and the gyro
+		varX += xR*xR*noiseR + xL*xL*noiseL;
+		covXY += xR*yR*noiseR + xL*yL*noiseL;
+		covXTheta += xR*thetaR*noiseR + xL*thetaL*noiseL;
+		varY += yR*yR*noiseR + yL*yL*noiseL;
+		covYTheta += yR*thetaR*noiseR + yL*thetaL*noiseL;
+		varTheta += thetaR*thetaR*noiseR + thetaL*thetaL*noiseL + weight*weight*GYRO_NOISE*Math.abs(gyroTheta);
+	}
+	
+	
 	//getters and setters
 	
 	/**
-	 * Sets the x value of the odometer.
+	 * Sets the x value of the odometer. The past poses are moved by the same amount. The uncertainty of the odometer is unchanged.
 	 * 
 	 * @param x The new x value.
 	 */
 	public void setX(double x) {
 		synchronized (lock) {
+			shiftHistory(historyX, x - this.x);
 			this.x = x;
+			publish();
+		}
+	}
+
+	/**
+	 * Sets the x value of the odometer after measuring it. The value is replaced by the measurement, so the odometer becomes
+	 * exactly as uncertain of it as the measurement, and its error is no longer related to the errors of the other values.
+	 * The past poses are moved by the same amount.
+	 * 
+	 * @param x The new x value.
+	 * @param variance How much the measurement may be wrong, as a variance (in cm^2).
+	 */
+	public void setX(double x, double variance) {
+		synchronized (lock) {
+			setX(x);
+			varX = variance;
+			covXY = 0;
+			covXTheta = 0;
 		}
 	}
 
 	/**
-	 * Sets the y value of the odometer.
+	 * Sets the y value of the odometer. The past poses are moved by the same amount. The uncertainty of the odometer is unchanged.
 	 * 
 	 * @param y The new y value.
 	 */
 	public void setY(double y) {
 		synchronized (lock) {
+			shiftHistory(historyY, y - this.y);
 			this.y = y;
+			publish();
 		}
 	}
 
 	/**
-	 * Sets the theta value of the odometer. If there is a gyro, the robot MUST be stationary, and theta will be set to 0.
+	 * Sets the y value of the odometer after measuring it. The value is replaced by the measurement, so the odometer becomes
+	 * exactly as uncertain of it as the measurement, and its error is no longer related to the errors of the other values.
+	 * The past poses are moved by the same amount.
+	 * 
+	 * @param y The new y value.
+	 * @param variance How much the measurement may be wrong, as a variance (in cm^2).
+	 */
+	public void setY(double y, double variance) {
+		synchronized (lock) {
+			setY(y);
+			varY = variance;
+			covXY = 0;
+			covYTheta = 0;
+		}
+	}
+
+	/**
+	 * Sets the theta value of the odometer. The gyro sensor, if there is one, keeps measuring changes from the new value.
+	 * The angles of the past poses are turned by the same amount, but not their positions. The uncertainty of the odometer is unchanged.
 	 * 
 	 * @param theta The new theta value. Must be in rads between 0 and 2pi.
 	 */
 	public void setTheta(double theta) {
 		synchronized (lock) {
-			//if there is a gyro sensor, reset it
-			if(gyroSensor != null){
-				gyroSensor.reset();
-				theta = 0;
-			}
+			shiftHistory(historyTheta, theta - this.theta);
 			this.theta = theta;
+			publish();
+		}
+	}
+	
+	/**
+	 * Sets the theta value of the odometer after measuring it. The value is replaced by the measurement, so the odometer becomes
+	 * exactly as uncertain of it as the measurement, and its error is no longer related to the errors of the other values.
+	 * The gyro sensor, if there is one, keeps measuring changes from the new value.
+	 * The angles of the past poses are turned by the same amount, but not their positions.
+	 * 
+	 * @param theta The new theta value. Must be in rads between 0 and 2pi.
+	 * @param variance How much the measurement may be wrong, as a variance (in rad^2).
+	 */
+	public void setTheta(double theta, double variance) {
+		synchronized (lock) {
+			setTheta(theta);
+			varTheta = variance;
+			covXTheta = 0;
+			covYTheta = 0;
 		}
 	}
 	
@@ -168,11 +336,7 @@ public class Odometer extends Thread {
 	 * @return The current x value of the odometer.
 	 */
 	public double getX() {
-		double result;
-		synchronized (lock) {
-			result = x;
-		}
-		return result;
+		return pose.getX();
 	}
 
 	/**
@@ -181,11 +345,7 @@ public class Odometer extends Thread {
 	 * @return The current y value of the odometer.
 	 */
 	public double getY() {
-		double result;
-		synchronized (lock) {
-			result = y;
-		}
-		return result;
+		return pose.getY();
 	}
 
 	/**
@@ -194,11 +354,185 @@ public class Odometer extends Thread {
 	 * @return The current angle of the odometer. In rads between 0 and 2pi, starting counterclockwise from the positive x axis.
 	 */
 	public double getTheta() {
-		double result;
+		return pose.getTheta();
+	}
+	
+	/**
+	 * Returns the pose calculated by the latest update of the odometer. The x, y and theta of the pose always come from the same update.
+	 * Never blocks, even while the odometer is updating.
+	 * 
+	 * @return The current pose of the odometer.
+	 */
+	public Pose getPose() {
+		return pose;
+	}
+	
+	/**
+	 * Returns the pose the robot was at at a given time, such as the time a sensor sample was read.
+	 * The pose is interpolated between the two updates of the odometer surrounding that time.
+	 * Only the last 128 updates (over half a second) are remembered: earlier times give the oldest pose remembered, and later times give the latest pose.
+	 * 
+	 * @param time The time, from System.nanoTime().
+	 * @return The pose of the odometer at that time.
+	 */
+	public Pose getPose(long time) {
 		synchronized (lock) {
-			result = theta;
+			if(historySize == 0)
+				return pose;
+			int oldest = (historyIndex - historySize + HISTORY) % HISTORY;
+			if(time - historyTime[oldest] <= 0)
+				return historyPose(oldest, oldest, 0, historyTime[oldest]);
+			
+			//find the last update before the time, going through the history in chronological order
+			int low = 0, high = historySize - 1, middle;
+			while(low < high){
+				middle = (low + high + 1) / 2;
+				if(time - historyTime[(oldest + middle) % HISTORY] >= 0)
+					low = middle;
+				else
+					high = middle - 1;
+			}
+			int before = (oldest + low) % HISTORY;
+			if(low == historySize - 1)
+				return historyPose(before, before, 0, historyTime[before]);
+			int after = (before + 1) % HISTORY;
+			return historyPose(before, after, (double) (time - historyTime[before]) / (historyTime[after] - historyTime[before]), time);
 		}
-		return result;
+	}
+	
+	//adds a pose to the history, overwriting the oldest one if it is full. Must be called while holding the lock
+	private void record(Pose pose) {
+		historyX[historyIndex] = pose.getX();
+		historyY[historyIndex] = pose.getY();
+		historyTheta[historyIndex] = pose.getTheta();
+		historyVelocity[historyIndex] = pose.getVelocity();
+		historyTime[historyIndex] = pose.getTimestamp();
+		historyIndex = (historyIndex + 1) % HISTORY;
+		if(historySize < HISTORY)
+			historySize++;
+	}
+	
+	//moves every value of the history by the same amount. Must be called while holding the lock
+	private void shiftHistory(double[] history, double amount) {
+		for(int i = 0; i < HISTORY; i++)
+			history[i] += amount;
+	}
+	
+	//creates the pose a fraction of the way between two poses of the history. Must be called while holding the lock
+	private Pose historyPose(int before, int after, double fraction, long time) {
+		//turn the shortest way between the two angles, and keep the result between 0 and 2pi
+		double t = Angle.normalize(historyTheta[before] + fraction * Angle.difference(historyTheta[before], historyTheta[after]));
+		return new Pose(historyX[before] + fraction * (historyX[after] - historyX[before]),
+				historyY[before] + fraction * (historyY[after] - historyY[before]), t, time,
+				historyVelocity[before] + fraction * (historyVelocity[after] - historyVelocity[before]));
+	}
+	
+	/**
+	 * Returns the pose the robot should be at now, predicted from the latest update of the odometer and the speeds and accelerations at that time.
+	 * Never blocks, even while the odometer is updating.
+	 * 
+	 * @return The predicted current pose.
+	 */
+	public Pose getPredictedPose() {
+		return pose.predict(System.nanoTime());
+	}
+	
+	//publishes the current position after it was set, keeping the time, speeds and accelerations of the latest update. Must be called while holding the lock
+	private void publish() {
+		Pose last = pose;
+		pose = new Pose(x, y, theta, last.getTimestamp(), last.getVelocity(), last.getAngularVelocity(), last.getAcceleration(), last.getAngularAcceleration());
+	}
+	
+	/**
+	 * Returns how uncertain the odometer is of its position and angle, which grows as the robot moves and shrinks when they are measured.
+	 * The odometer starts at (0, 0, 0) without knowing where the robot really is, so its uncertainty is very large until they are measured.
+	 * 
+	 * @return The covariance matrix of x, y and theta, in that order (in cm^2, cm*rad and rad^2).
+	 */
+	public double[][] getCovariance() {
+		synchronized (lock) {
+			return new double[][]{
+				{varX, covXY, covXTheta},
+				{covXY, varY, covYTheta},
+				{covXTheta, covYTheta, varTheta}};
+		}
+	}
+	
+	/**
+	 * Returns how far the real position of the robot may be from the odometer's, as a standard deviation.
+	 * 
+	 * @return The standard deviation of the position, in cm.
+	 */
+	public double getPositionError() {
+		synchronized (lock) {
+			return Math.sqrt(varX + varY);
+		}
+	}
+	
+	/**
+	 * Returns how far the real angle of the robot may be from the odometer's, as a standard deviation.
+	 * 
+	 * @return The standard deviation of the angle, in rads.
+	 */
+	public double getAngleError() {
+		synchronized (lock) {
+			return Math.sqrt(varTheta);
+		}
+	}
+	
+	/**
+	 * Returns the amount of updates the odometer has done.
+	 * 
+	 * @return The amount of updates since the odometer was started.
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+	
+	/**
+	 * Returns the amount of updates which took longer than a period, delaying the next one.
+	 * 
+	 * @return The amount of overruns since the odometer was started.
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+	
+	/**
+	 * Returns the longest time an update started after it was due.
+	 * 
+	 * @return The maximum jitter, in ns.
+	 */
+	public long getMaxJitter() {
+		return maxJitter;
+	}
+	
+	/**
+	 * Returns the average time an update started after it was due.
+	 * 
+	 * @return The average jitter, in ns.
+	 */
+	public long getAverageJitter() {
+		long n = cycles;
+		return (n == 0) ? 0 : totalJitter / n;
+	}
+	
+	/**
+	 * Returns the radius of the left wheel used by the odometer. The right wheel is larger by the correction factor.
+	 * 
+	 * @return The wheel radius, in cm.
+	 */
+	public double getWheelRadius() {
+		return WHEEL_RADIUS;
+	}
+	
+	/**
+	 * Returns the distance between the wheels used by the odometer.
+	 * 
+	 * @return The track, in cm.
+	 */
+	public double getTrack() {
+		return TRACK;
 	}
 	
 	/**
@@ -207,7 +541,6 @@ public class Odometer extends Thread {
 	 * @return The odometer's x, y and theta, in string form.
 	 */
 	public String toString(){
-		return Utility.truncate("x: " + x, 16) + Utility.truncate("y: " + y, 16) + Utility.truncate("t: " + theta, 16);
-		
+		return pose.toString();
 	}
 }
\ No newline at end of file
@@ -14,14 +14,18 @@ import lejos.hardware.sensor.EV3ColorSensor;
 public class OdometryCorrection extends Thread{
 	
 	//member variables
-	private static final double LIGHT_THRESHOLD = 0.06, SQUARE_LENGTH = 30.67, DIST_THRESHOLD = 7, ANGLE_THRESHOLD = Math.PI/6;
+	//the light threshold is a rate of change of the light reading per second
+	private static final double LIGHT_THRESHOLD = 1.2, SQUARE_LENGTH = 30.67, DIST_THRESHOLD = 7, ANGLE_THRESHOLD = Math.PI/6;
 	private static final int PERIOD = 50;
+	//how much a correction from a line may be wrong, as variances in cm^2 and rad^2
+	private static final double LINE_VARIANCE = 0.5, LINE_ANGLE_VARIANCE = Math.pow(Math.PI/90, 2);
 	private final double SENSOR_DIST_TANGENT, SENSOR_DIST_NORMAL;
 	private Odometer odometer;
 	private Navigator navigator;
 	private Filter leftFilter;
 	private Filter rightFilter;
 	private String lastCorrection;
+	private volatile boolean leftLine, rightLine;
 	
 	/**
 	 * Constructor for OdometryCorrection.
@@ -35,17 +39,24 @@ public class OdometryCorrection extends Thread{
 	 * @param sensorDistTangent The distance of the sensor to the center of rotation of the robot, tangent.
 	 * @param sensorDistNormal The distance of the sensor to the center of rotation of the robot, normal.
 	 * If you are using only 1 color sensor, this parameter is meaningless.
+	 * @param sampler The sensor sampler that will read the color sensors.
 	 */
-	public OdometryCorrection(Odometer odometer, Navigator navigator, EV3ColorSensor leftColorSensor, EV3ColorSensor rightColorSensor, double sensorDistTangent, double sensorDistNormal){
+	public OdometryCorrection(Odometer odometer, Navigator navigator, EV3ColorSensor leftColorSensor, EV3ColorSensor rightColorSensor, double sensorDistTangent, double sensorDistNormal, SensorSampler sampler){
 		this.odometer = odometer;
 		this.navigator = navigator;
-		this.leftFilter = new Filter(Type.DERIVATIVE, leftColorSensor.getRedMode(), 2);
+		//the right sensor is registered first so that both sensors are fresh when the left one is sampled
 		if(rightColorSensor != null){
-			this.rightFilter = new Filter(Type.DERIVATIVE, rightColorSensor.getRedMode(), 2);
+			this.rightFilter = sampler.register(rightColorSensor.getRedMode(), PERIOD).add(Type.DERIVATIVE, 2, null);
 		}
 		else{
 			rightFilter = null;
 		}
+		this.leftFilter = sampler.register(leftColorSensor.getRedMode(), PERIOD).add(Type.DERIVATIVE, 2, null);
+		//a line is entered when the light drops quickly, and left when it rises back quickly
+		//each sensor has its own listener, so the listeners never need to tell the detectors apart
+		new EdgeDetector(leftFilter, -LIGHT_THRESHOLD, LIGHT_THRESHOLD, new LineListener(true));
+		if(rightFilter != null)
+			new EdgeDetector(rightFilter, -LIGHT_THRESHOLD, LIGHT_THRESHOLD, new LineListener(false));
 		this.SENSOR_DIST_TANGENT = sensorDistTangent;
 		this.SENSOR_DIST_NORMAL = sensorDistNormal;
 		this.lastCorrection = "";
@@ -56,24 +67,21 @@ public class OdometryCorrection extends Thread{
 		
 		if(rightFilter != null){
 				
-			long start, end;
 			double[][] sensorLocations = new double[2][2];
 			Boolean[] lineTypes = new Boolean[2];	//true for horizontal, false for vertical, null for nothing
 			int lastSensor = 0;	//the last sensor that saw a line, 0 for left, 1 for right
-			double x=0, y=0, theta=0, offset=0, distance=0;
+			double x=0, y=0, theta=0, offset=0, distance=0, heading, cos, sin;
 			leftFilter.saturateSamples(0);
-			rightFilter.saturateSamples(0);
 			
 			while(true){
-				start = System.currentTimeMillis();
-				
+				//wait for the sampler to read both sensors
 				leftFilter.addSample();
-				rightFilter.addSample();
 				
 				if(!navigator.isTurning()){
 					//update the sensor positions if you see a black line
 					//left sensor
-					if(Math.abs(leftFilter.getFilteredData()) > LIGHT_THRESHOLD){
+					if(leftLine){
+						leftLine = false;
 						lastSensor = 0;
 						sensorLocations[0][0] = odometer.getX();
 						sensorLocations[0][1] = odometer.getY();
@@ -82,7 +90,8 @@ public class OdometryCorrection extends Thread{
 					}
 					
 					//right sensor
-					if(Math.abs(rightFilter.getFilteredData()) > LIGHT_THRESHOLD){
+					if(rightLine){
+						rightLine = false;
 						lastSensor = 1;
 						sensorLocations[1][0] = odometer.getX();
 						sensorLocations[1][1] = odometer.getY();
@@ -93,39 +102,44 @@ public class OdometryCorrection extends Thread{
 					//make a correction if left and right see the same type of line and they are not null
 					if(lineTypes[0] != null && lineTypes[0] == lineTypes[1]){
 						
+						//the angle is only read once, since it is used many times
+						heading = odometer.getTheta();
+						cos = Angle.cos(heading);
+						sin = Angle.sin(heading);
+						
 						//if you are traveling in x and see a vertical line
-						if((odometer.getTheta() % Math.PI < Math.PI/4 || odometer.getTheta() % Math.PI > Math.PI*3/4) && !lineTypes[0]){
+						if((heading % Math.PI < Math.PI/4 || heading % Math.PI > Math.PI*3/4) && !lineTypes[0]){
 							
-							offset = SENSOR_DIST_TANGENT*Math.cos(odometer.getTheta()) + SENSOR_DIST_NORMAL*Math.sin(odometer.getTheta()) * -(2*lastSensor-1);
+							offset = SENSOR_DIST_TANGENT*cos + SENSOR_DIST_NORMAL*sin * -(2*lastSensor-1);
 							
 							x = Math.round((odometer.getX() - offset)/SQUARE_LENGTH)*SQUARE_LENGTH + offset;
 							if(Math.abs(x - odometer.getX()) < DIST_THRESHOLD)
-								odometer.setX(x);
+								odometer.setX(x, LINE_VARIANCE);
 							
 							distance = Math.sqrt(Math.pow(odometer.getX() - sensorLocations[(lastSensor+1)%2][0], 2) + Math.pow(odometer.getY() - sensorLocations[(lastSensor+1)%2][1], 2));
 							if(distance < DIST_THRESHOLD){
-								theta = Math.PI * (odometer.getTheta() / Math.PI) - (2*lastSensor-1)*Math.atan2(distance, 2*SENSOR_DIST_NORMAL);
-								if(Utility.angleDiff(theta, odometer.getTheta()) < ANGLE_THRESHOLD)
-									odometer.setTheta(theta);
+								theta = Math.PI * (heading / Math.PI) - (2*lastSensor-1)*Math.atan2(distance, 2*SENSOR_DIST_NORMAL);
+								if(Angle.distance(theta, heading) < ANGLE_THRESHOLD)
+									odometer.setTheta(theta, LINE_ANGLE_VARIANCE);
 							}
 							
 							lastCorrection = Utility.truncate("x: " + x, 7) + Utility.truncate(" T: " + theta, 9);
 						}
 						
 						//if you are traveling in y and see a horizontal line
-						if((odometer.getTheta() % Math.PI > Math.PI/4 && odometer.getTheta() % Math.PI < Math.PI*3/4) && lineTypes[0]){
+						if((heading % Math.PI > Math.PI/4 && heading % Math.PI < Math.PI*3/4) && lineTypes[0]){
 							
-							offset = SENSOR_DIST_TANGENT*Math.sin(odometer.getTheta()) + SENSOR_DIST_NORMAL*Math.cos(odometer.getTheta()) * (2*lastSensor-1);
+							offset = SENSOR_DIST_TANGENT*sin + SENSOR_DIST_NORMAL*cos * (2*lastSensor-1);
 							
 							y = Math.round((odometer.getY() - offset)/SQUARE_LENGTH)*SQUARE_LENGTH + offset;
 							if(Math.abs(y - odometer.getY()) < DIST_THRESHOLD)
-								odometer.setY(y);
+								odometer.setY(y, LINE_VARIANCE);
 							
 							distance = Math.sqrt(Math.pow(odometer.getX() - sensorLocations[(lastSensor+1)%2][0], 2) + Math.pow(odometer.getY() - sensorLocations[(lastSensor+1)%2][1], 2));
 							if(distance < DIST_THRESHOLD){
-								theta = (odometer.getTheta() < Math.PI ? Math.PI/2 : Math.PI*3/2) - (2*lastSensor-1)*Math.atan2(distance, 2*SENSOR_DIST_NORMAL);
-								if(Utility.angleDiff(theta, odometer.getTheta()) < ANGLE_THRESHOLD)
-									odometer.setTheta(theta);
+								theta = (heading < Math.PI ? Math.PI/2 : Math.PI*3/2) - (2*lastSensor-1)*Math.atan2(distance, 2*SENSOR_DIST_NORMAL);
+								if(Angle.distance(theta, heading) < ANGLE_THRESHOLD)
+									odometer.setTheta(theta, LINE_ANGLE_VARIANCE);
 							}
 							
 							lastCorrection = Utility.truncate("y: " + y, 7) + Utility.truncate(" T: " + theta, 9);
@@ -136,59 +150,39 @@ public class OdometryCorrection extends Thread{
 					}
 				}
 				else{
+					leftLine = false;
+					rightLine = false;
 					lineTypes[0] = null;
 					lineTypes[1] = null;
 				}
-				
-	
-				// this ensures that the odometry correction only runs once every period
-				end = System.currentTimeMillis();
-				if (end - start < PERIOD) {
-					try {
-						Thread.sleep(PERIOD - (end - start));
-					} catch (InterruptedException e) {
-						// nothing to do here
-					}
-				}
 			}
 		}
 		else{
 			
-			long start, end;
 			double nearestX, nearestY, offset;
+			Pose pose;
 			leftFilter.saturateSamples(0);
 			
 			while(true){
-				start = System.currentTimeMillis();
-
+				//wait for the sampler to read the sensor
 				leftFilter.addSample();
 				
-				if(Math.abs(leftFilter.getFilteredData()) > LIGHT_THRESHOLD){
+				if(leftLine){
+					leftLine = false;
 					Sound.beep();
-					offset = SENSOR_DIST_TANGENT*Math.cos(odometer.getTheta());
-					nearestX = Math.round((odometer.getX() - offset)/SQUARE_LENGTH)*SQUARE_LENGTH + offset;
-					offset = SENSOR_DIST_TANGENT*Math.sin(odometer.getTheta());
-					nearestY = Math.round((odometer.getY() - offset)/SQUARE_LENGTH)*SQUARE_LENGTH + offset;
-					if(Math.abs(odometer.getX()-nearestX) < Math.abs(odometer.getY()-nearestY)){
-						odometer.setX(nearestX);
+					pose = odometer.getPose();
+					offset = SENSOR_DIST_TANGENT*Angle.cos(pose.getTheta());
+					nearestX = Math.round((pose.getX() - offset)/SQUARE_LENGTH)*SQUARE_LENGTH + offset;
+					offset = SENSOR_DIST_TANGENT*Angle.sin(pose.getTheta());
+					nearestY = Math.round((pose.getY() - offset)/SQUARE_LENGTH)*SQUARE_LENGTH + offset;
+					if(Math.abs(pose.getX()-nearestX) < Math.abs(pose.getY()-nearestY)){
+						odometer.setX(nearestX, LINE_VARIANCE);
 						lastCorrection = "x: " + nearestX;
 					}
 					else{
-						odometer.setY(nearestY);
+						odometer.setY(nearestY, LINE_VARIANCE);
 						lastCorrection = "y: " + nearestY;
 					}
-					try{Thread.sleep(1000);}catch(Exception e){}
-					leftFilter.saturateSamples(0);
-				}
-				
-				// this ensures that the odometry correction only runs once every period
-				end = System.currentTimeMillis();
-				if (end - start < PERIOD) {
-					try {
-						Thread.sleep(PERIOD - (end - start));
-					} catch (InterruptedException e) {
-						// nothing to do here
-					}
 				}
 			}
 		}
@@ -197,4 +191,39 @@ public class OdometryCorrection extends Thread{
 	public String toString(){
 		return lastCorrection;
 	}
+	
+	
+	/**
+	 * The listener of the line detector of one sensor, which signals when the sensor enters a line.
+	 */
+	private class LineListener implements EdgeListener{
+		
+		private final boolean left;
+		
+		LineListener(boolean left){
+			this.left = left;
+		}
+		
+		/**
+		 * Signals that the sensor entered a line. Called by the line detector as soon as the line is seen.
+		 * 
+		 * @param detector The line detector of the sensor.
+		 * @param time The time at which the line was seen.
+		 */
+		public void risingEdge(EdgeDetector detector, long time){
+			if(left)
+				leftLine = true;
+			else
+				rightLine = true;
+		}
+		
+		/**
+		 * Does nothing, since only entering a line matters.
+		 * 
+		 * @param detector The line detector of the sensor.
+		 * @param time The time at which the sensor left the line.
+		 */
+		public void fallingEdge(EdgeDetector detector, long time){
+		}
+	}
 }
@@ -0,0 +1,159 @@
+package finalProject;
+
+/**
+ * An immutable snapshot of the robot's position and orientation, as calculated by the odometer in a single update.
+ * Since it never changes, it can be shared between threads without locking.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public final class Pose {
+
+	//member variables
+	private final double x, y, theta;
+	private final long timestamp;
+	private final double velocity, angularVelocity;
+	private final double acceleration, angularAcceleration;
+	private final static long MAX_PREDICTION = 100000000L;	//the furthest in the future a pose can be predicted, in ns
+
+
+	/**
+	 * Constructor for a Pose whose angular velocity and accelerations are unknown. They are set to 0.
+	 *
+	 * @param x The x value.
+	 * @param y The y value.
+	 * @param theta The angle. In rads between 0 and 2pi, starting counterclockwise from the positive x axis.
+	 * @param timestamp The time at which the robot was at this pose, from System.nanoTime().
+	 * @param velocity The speed of the robot, in cm/s. Negative when going backwards.
+	 */
+	public Pose(double x, double y, double theta, long timestamp, double velocity){
+		this(x, y, theta, timestamp, velocity, 0, 0, 0);
+	}
+
+	/**
+	 * Constructor for Pose.
+	 *
+	 * @param x The x value.
+	 * @param y The y value.
+	 * @param theta The angle. In rads between 0 and 2pi, starting counterclockwise from the positive x axis.
+	 * @param timestamp The time at which the robot was at this pose, from System.nanoTime().
+	 * @param velocity The speed of the robot, in cm/s. Negative when going backwards.
+	 * @param angularVelocity The turning speed of the robot, in rad/s. Positive counterclockwise.
+	 * @param acceleration The change in speed of the robot, in cm/s^2.
+	 * @param angularAcceleration The change in turning speed of the robot, in rad/s^2.
+	 */
+	public Pose(double x, double y, double theta, long timestamp, double velocity, double angularVelocity, double acceleration, double angularAcceleration){
+		this.x = x;
+		this.y = y;
+		this.theta = theta;
+		this.timestamp = timestamp;
+		this.velocity = velocity;
+		this.angularVelocity = angularVelocity;
+		this.acceleration = acceleration;
+		this.angularAcceleration = angularAcceleration;
+	}
+
+	/**
+	 * Predicts where the robot will be at a later time, assuming its accelerations do not change until then.
+	 * Only meant for short times, such as the time since the last update of the odometer: the prediction stops 100ms after this pose.
+	 *
+	 * @param time The time to predict the pose at, from System.nanoTime(). Times before this pose give this pose.
+	 * @return The predicted pose.
+	 */
+	public Pose predict(long time){
+		long elapsed = Math.min(time - timestamp, MAX_PREDICTION);
+		if(elapsed <= 0)
+			return this;
+		double dt = elapsed / 1e9;
+		double distance = velocity * dt + acceleration * dt * dt / 2;
+		double deltaTheta = angularVelocity * dt + angularAcceleration * dt * dt / 2;
+		//move along an arc, like the odometer does
+		distance *= Utility.arcRatio(deltaTheta);
+		return new Pose(x + distance * Angle.cos(theta + deltaTheta/2), y + distance * Angle.sin(theta + deltaTheta/2), Angle.normalize(theta + deltaTheta), timestamp + elapsed,
+				velocity + acceleration * dt, angularVelocity + angularAcceleration * dt, acceleration, angularAcceleration);
+	}
+
+
+	//getters
+
+	/**
+	 * Returns the x value of the pose.
+	 *
+	 * @return The x value.
+	 */
+	public double getX(){
+		return x;
+	}
+
+	/**
+	 * Returns the y value of the pose.
+	 *
+	 * @return The y value.
+	 */
+	public double getY(){
+		return y;
+	}
+
+	/**
+	 * Returns the angle of the pose.
+	 *
+	 * @return The angle. In rads between 0 and 2pi, starting counterclockwise from the positive x axis.
+	 */
+	public double getTheta(){
+		return theta;
+	}
+
+	/**
+	 * Returns the time at which the robot was at this pose.
+	 *
+	 * @return The time of the pose, from System.nanoTime().
+	 */
+	public long getTimestamp(){
+		return timestamp;
+	}
+
+	/**
+	 * Returns the speed of the robot at this pose.
+	 *
+	 * @return The speed, in cm/s. Negative when going backwards.
+	 */
+	public double getVelocity(){
+		return velocity;
+	}
+
+	/**
+	 * Returns the turning speed of the robot at this pose.
+	 *
+	 * @return The turning speed, in rad/s. Positive counterclockwise.
+	 */
+	public double getAngularVelocity(){
+		return angularVelocity;
+	}
+
+	/**
+	 * Returns the change in speed of the robot at this pose.
+	 *
+	 * @return The acceleration, in cm/s^2.
+	 */
+	public double getAcceleration(){
+		return acceleration;
+	}
+
+	/**
+	 * Returns the change in turning speed of the robot at this pose.
+	 *
+	 * @return The angular acceleration, in rad/s^2.
+	 */
+	public double getAngularAcceleration(){
+		return angularAcceleration;
+	}
+
+	/**
+	 * Returns a string representation of the pose which fits the EV3's LCD screen.
+	 *
+	 * @return The pose's x, y and theta, in string form.
+	 */
+	public String toString(){
+		return Utility.truncate("x: " + x, 16) + Utility.truncate("y: " + y, 16) + Utility.truncate("t: " + theta, 16);
+	}
+}
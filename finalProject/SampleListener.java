@@ -0,0 +1,18 @@
+package finalProject;
+
+/**
+ * The interface for objects that react to every new reading of a sensor.
+ * 
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public interface SampleListener {
+	
+	/**
+	 * Called after a new reading was given to every filter of a chain, on the thread that added the sample.
+	 * Must return quickly, since the sensors are not read while it runs.
+	 * 
+	 * @param chain The chain that received the reading.
+	 */
+	public void sampleAdded(FilterChain chain);
+}
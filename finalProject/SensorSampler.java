@@ -0,0 +1,103 @@
+package finalProject;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import lejos.robotics.SampleProvider;
+
+/**
+ * The class responsible for reading the sensors.
+ * Each sensor is owned by a single FilterChain, which is sampled at a fixed rate and feeds all of its filters.
+ * Consumers only read the filters, so no other thread needs to poll the sensors.
+ * Chains that are due at the same time are sampled in the order they were registered.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class SensorSampler extends Thread {
+
+	//member variables
+	private ArrayList<SampleProvider> sensors;
+	private ArrayList<FilterChain> chains;
+	private long[] periods;
+	private long[] deadlines;
+	private Object lock;
+
+	/**
+	 * Constructor for SensorSampler.
+	 */
+	public SensorSampler(){
+		sensors = new ArrayList<SampleProvider>();
+		chains = new ArrayList<FilterChain>();
+		periods = new long[0];
+		deadlines = new long[0];
+		lock = new Object();
+	}
+
+	/**
+	 * Starts sampling a sensor at a fixed rate. If the sensor is already being sampled, its chain is returned
+	 * and the sensor is sampled at the fastest of the two rates.
+	 *
+	 * @param s The sensor (and mode) to be sampled.
+	 * @param period The time interval between two readings, in ms.
+	 * @return The chain fed by the sensor. Filters added to it will receive every reading.
+	 */
+	public FilterChain register(SampleProvider s, int period){
+		synchronized (lock) {
+			int i = sensors.indexOf(s);
+			if(i >= 0){
+				periods[i] = Math.min(periods[i], period * 1000000L);
+				chains.get(i).period = periods[i];
+				return chains.get(i);
+			}
+			FilterChain chain = new FilterChain(s);
+			chain.sampled = true;
+			chain.period = period * 1000000L;
+			sensors.add(s);
+			chains.add(chain);
+			periods = append(periods, period * 1000000L);
+			deadlines = append(deadlines, System.nanoTime());
+			//wake up the sampler in case it is waiting for another chain
+			LockSupport.unpark(this);
+			return chain;
+		}
+	}
+
+	//required for Thread
+	public void run(){
+
+		long now, next;
+
+		while(true){
+			now = System.nanoTime();
+			next = now + 1000000000L;
+
+			synchronized (lock) {
+				for(int i = 0; i < chains.size(); i++){
+					if(now - deadlines[i] >= 0){
+						chains.get(i).addSample();
+						//keep the same rhythm, unless a whole period was missed
+						deadlines[i] += periods[i];
+						if(now - deadlines[i] >= 0)
+							deadlines[i] = now + periods[i];
+					}
+					if(deadlines[i] - next < 0)
+						next = deadlines[i];
+				}
+			}
+
+			// sleep until the next chain is due
+			now = System.nanoTime();
+			if(next - now > 0)
+				LockSupport.parkNanos(next - now);
+		}
+	}
+
+	//returns a copy of an array with an extra element at the end
+	private static long[] append(long[] a, long value){
+		long[] result = new long[a.length + 1];
+		System.arraycopy(a, 0, result, 0, a.length);
+		result[a.length] = value;
+		return result;
+	}
+}
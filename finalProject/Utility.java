@@ -50,10 +50,23 @@ public abstract class Utility {
 	 * For instance, if a1 = pi/4 and a2 = 3pi/2, the result will be 3pi/4.
 	 */
 	public static double angleDiff(double a1, double a2){
-		a1 = a1%(2*Math.PI);
-		a2 = a2%(2*Math.PI);
-		double diff = Math.abs(a1 - a2);
-		return Math.min(diff, 2*Math.PI - diff);
+		return Angle.distance(a1, a2);
+	}
+	
+	/**
+	 * Calculates the ratio between the straight distance covered by a circular arc and the length of the arc.
+	 * Moving a distance along an arc which turns by an angle is the same as moving the distance times this ratio
+	 * in a straight line, along the average angle of the arc.
+	 * 
+	 * @param angle The angle the arc turns by, in rads.
+	 * @return The ratio, between 0 and 1. It is 1 for a straight line.
+	 */
+	public static double arcRatio(double angle){
+		double half = angle / 2;
+		//avoid dividing by 0 for small angles, where the ratio is almost 1 - half^2/6
+		if(Math.abs(half) < 1e-4)
+			return 1 - half*half/6;
+		return Math.sin(half) / half;
 	}
 	
 	/**
@@ -0,0 +1,137 @@
+package testing;
+
+import java.util.Random;
+
+import finalProject.Angle;
+
+/**
+ * Checks the results of finalProject.Angle against Math, then measures how fast they are compared to the usual ways of doing the same thing.
+ * Runs on the robot or on a computer. The accuracy checks print FAIL lines if anything is off.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class AngleTest {
+
+	//constants
+	private static final int SAMPLES = 1000000, ITERATIONS = 1000000;
+	private static final double RANGE = 100;	//the angles tested go from -RANGE to RANGE rads
+
+	private static volatile double sink;
+	private static int failures;
+
+
+	public static void main(String[] args) {
+
+		checkAccuracy();
+		System.out.println(failures == 0 ? "accuracy: PASS" : "accuracy: " + failures + " FAIL");
+
+		double[] angles = new double[1024];
+		Random random = new Random(13);
+		for(int i = 0; i < angles.length; i++)
+			angles[i] = (random.nextDouble() * 2 - 1) * 4 * Math.PI;
+
+		//warm up before measuring
+		for(int i = 0; i < 3; i++)
+			benchmark(angles, ITERATIONS / 10, false);
+		benchmark(angles, ITERATIONS, true);
+	}
+
+
+	//compares every method with a reference calculated with Math
+	private static void checkAccuracy(){
+		Random random = new Random(13);
+		double maxSin = 0, maxCos = 0;
+
+		//special angles
+		double[] special = {0, -0.0, -1e-17, 1e-17, Math.PI, -Math.PI, Angle.TWO_PI, -Angle.TWO_PI, Angle.TWO_PI - 1e-15, 1e6 + 0.5, -1e6 - 0.5};
+		for(double a : special)
+			checkAngle(a, random.nextDouble() * Angle.TWO_PI);
+
+		for(int i = 0; i < SAMPLES; i++){
+			double a = (random.nextDouble() * 2 - 1) * RANGE, b = (random.nextDouble() * 2 - 1) * RANGE;
+			checkAngle(a, b);
+			maxSin = Math.max(maxSin, Math.abs(Angle.sin(a) - Math.sin(a)));
+			maxCos = Math.max(maxCos, Math.abs(Angle.cos(a) - Math.cos(a)));
+		}
+
+		System.out.println("max sin error: " + maxSin + " (bound " + Angle.TABLE_ERROR + ")");
+		System.out.println("max cos error: " + maxCos + " (bound " + Angle.TABLE_ERROR + ")");
+		if(maxSin > Angle.TABLE_ERROR || maxCos > Angle.TABLE_ERROR)
+			fail("table error above bound");
+	}
+
+	//checks the normalization of an angle, and the differences between two angles
+	private static void checkAngle(double a, double b){
+		double n = Angle.normalize(a);
+		if(!(n >= 0 && n < Angle.TWO_PI) || Math.abs(Math.sin(n) - Math.sin(a)) > 1e-9 || Math.abs(Math.cos(n) - Math.cos(a)) > 1e-9)
+			fail("normalize(" + a + ") = " + n);
+
+		double d = Angle.difference(a, b);
+		if(!(d >= -Math.PI && d <= Math.PI) || Math.abs(Math.sin(a + d) - Math.sin(b)) > 1e-9 || Math.abs(Math.cos(a + d) - Math.cos(b)) > 1e-9)
+			fail("difference(" + a + ", " + b + ") = " + d);
+
+		//the distance is the smallest angle between the two directions, which acos of their dot product also gives
+		double reference = Math.acos(Math.max(-1, Math.min(1, Math.cos(a)*Math.cos(b) + Math.sin(a)*Math.sin(b))));
+		if(Math.abs(Angle.distance(a, b) - reference) > 1e-6)
+			fail("distance(" + a + ", " + b + ") = " + Angle.distance(a, b) + " instead of " + reference);
+	}
+
+	private static void fail(String message){
+		failures++;
+		if(failures <= 10)
+			System.out.println("FAIL " + message);
+	}
+
+
+	//measures the time per call of each method and of the usual way of doing the same thing
+	private static void benchmark(double[] angles, int iterations, boolean print){
+		int mask = angles.length - 1;
+		double d = 0;
+		long start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; i++){
+			double a = angles[i & mask] % (2*Math.PI);
+			if(a < 0)
+				a += 2*Math.PI;
+			d += a;
+		}
+		long modulo = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; i++)
+			d += Angle.normalize(angles[i & mask]);
+		long normalize = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; i++){
+			double a1 = angles[i & mask] % (2*Math.PI), a2 = angles[(i + 1) & mask] % (2*Math.PI);
+			double diff = Math.abs(a1 - a2);
+			d += Math.min(diff, 2*Math.PI - diff);
+		}
+		long oldDiff = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; i++)
+			d += Angle.difference(angles[i & mask], angles[(i + 1) & mask]);
+		long difference = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; i++)
+			d += Math.sin(angles[i & mask]) + Math.cos(angles[i & mask]);
+		long math = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int i = 0; i < iterations; i++)
+			d += Angle.sin(angles[i & mask]) + Angle.cos(angles[i & mask]);
+		long table = System.nanoTime() - start;
+
+		sink = d;
+		if(print){
+			System.out.println("% wrap: " + modulo / (iterations / 1000) + "ps, normalize: " + normalize / (iterations / 1000) + "ps");
+			System.out.println("angleDiff (old): " + oldDiff / (iterations / 1000) + "ps, difference: " + difference / (iterations / 1000) + "ps");
+			System.out.println("Math sin+cos: " + math / (iterations / 1000) + "ps, table sin+cos: " + table / (iterations / 1000) + "ps");
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package testing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+
+import finalProject.Utility;
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+
+/**
+ * The program that records the tachos of the wheels during motions whose real distance and rotation are known,
+ * so that testing.OdometryCalibration can find the wheel geometry.
+ *
+ * For each motion, place the robot on a line facing along another line and press enter to start.
+ * The robot drives straight or spins slowly. Press enter again when it reaches the line given on the screen:
+ * the 4th line ahead or behind for the straight motions, and facing the starting line again after 2 full turns for the spins.
+ * The recording is saved in calibration.txt, in the format read by testing.OdometryCalibration.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class CalibrationRecorder {
+
+	//motors
+	private static final TextLCD t = LocalEV3.get().getTextLCD();
+	private static final EV3LargeRegulatedMotor leftMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("A"));
+	private static final EV3LargeRegulatedMotor rightMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("D"));
+
+	//constants
+	private static final double SQUARE_LENGTH = 30.67;
+	private static final int SPEED = 150, PERIOD = 20;
+
+	//the motions: the real distance (in cm), the real rotation (in degrees, counterclockwise) and the direction of each wheel
+	private static final double[][] MOTIONS = {
+		{4*SQUARE_LENGTH, 0, 1, 1},
+		{-4*SQUARE_LENGTH, 0, -1, -1},
+		{0, 720, -1, 1},
+		{0, -720, 1, -1}};
+	private static final String[] INSTRUCTIONS = {"4 lines ahead", "4 lines behind", "2 turns left", "2 turns right"};
+
+
+	public static void main(String[] args) throws Exception {
+
+		Utility.exit.start();
+		PrintWriter p = new PrintWriter(new FileOutputStream(new File("calibration.txt")));
+
+		for(int i = 0; i < MOTIONS.length; i++){
+			t.clear();
+			t.drawString(Utility.truncate("Motion " + (i+1), 16), 0, 0);
+			t.drawString(Utility.truncate(INSTRUCTIONS[i], 16), 0, 1);
+			t.drawString("Enter to start", 0, 2);
+			while(Button.waitForAnyPress() != Button.ID_ENTER);
+			//enter is still held down, and pressing it again ends the motion
+			waitForRelease();
+			t.drawString("Press at line  ", 0, 2);
+
+			p.println("motion " + MOTIONS[i][0] + " " + MOTIONS[i][1]);
+			record(p, (int) MOTIONS[i][2], (int) MOTIONS[i][3]);
+			Sound.beep();
+		}
+
+		p.close();
+		t.drawString("Saved", 0, 3);
+		Button.waitForAnyPress();
+	}
+
+
+	//moves the wheels in the given directions until enter is pressed, writing the time and tachos of both wheels every period
+	private static void record(PrintWriter p, int left, int right){
+		long start = System.currentTimeMillis(), next = start;
+
+		leftMotor.setSpeed(SPEED);
+		rightMotor.setSpeed(SPEED);
+		p.println(0 + " " + leftMotor.getTachoCount() + " " + rightMotor.getTachoCount());
+		if(left > 0) leftMotor.forward(); else leftMotor.backward();
+		if(right > 0) rightMotor.forward(); else rightMotor.backward();
+
+		while((Button.readButtons() & Button.ID_ENTER) == 0){
+			next += PERIOD;
+			try{Thread.sleep(Math.max(next - System.currentTimeMillis(), 0));}catch(InterruptedException e){}
+			p.println((System.currentTimeMillis() - start) + " " + leftMotor.getTachoCount() + " " + rightMotor.getTachoCount());
+		}
+
+		//the button was pressed when the robot was on the line, so record the tachos before it stops
+		p.println((System.currentTimeMillis() - start) + " " + leftMotor.getTachoCount() + " " + rightMotor.getTachoCount());
+		leftMotor.stop(true);
+		rightMotor.stop();
+		waitForRelease();
+	}
+
+	//waits until enter is no longer held down
+	private static void waitForRelease(){
+		while((Button.readButtons() & Button.ID_ENTER) != 0){
+			try{Thread.sleep(PERIOD);}catch(InterruptedException e){}
+		}
+	}
+}
@@ -37,21 +37,22 @@ public class ColorTest {
 		Button.waitForAnyPress();
 		
 		//instantiate classes
+		SensorSampler sampler = new SensorSampler();
 		Odometer odometer = new Odometer(leftMotor, rightMotor, null, TRACK, WHEEL_RADIUS);	//the gyro is null if we dont want to use it
 		Navigator navigator = new Navigator(odometer, leftMotor, rightMotor);
-		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor);
-		Localizer localizer = new Localizer(navigator, odometer, usSensor, null, SENSOR_DIST_TANGENT, 1);
-		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0);
+		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor, sampler);
+		Localizer localizer = new Localizer(navigator, odometer, usSensor, null, SENSOR_DIST_TANGENT, 1, sampler);
+		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0, sampler);
 		//Launcher launcher = new Launcher(launchMotor);
 		Aegis aegis = new Aegis(flapsMotor);
-		ColorRecognizer colorRecognizer = new ColorRecognizer(navigator, colorSensor);
-		Display display = new Display(t, new Object[]{odometer, obstacleAvoider.usFilter, colorRecognizer.rFilter,
-									  colorRecognizer.gFilter, colorRecognizer.bFilter});	//set the objects we want to display
+		ColorRecognizer colorRecognizer = new ColorRecognizer(navigator, colorSensor, sampler);
+		Display display = new Display(t, new Object[]{odometer, obstacleAvoider.usFilter, colorRecognizer});	//set the objects we want to display
 		//WifiConnection wifiConnection = new WifiConnection(SERVER_IP, TEAM_NUMBER);
 		
 		
 		//start the treads
 		Utility.exit.start();
+		sampler.start();
 		odometer.start();
 		navigator.start();
 		display.start();
@@ -0,0 +1,38 @@
+package testing;
+
+import lejos.robotics.SampleProvider;
+
+/**
+ * A sensor that returns new values every time it is sampled, without any I/O, so that benchmarks only measure the filters.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+class FakeSensor implements SampleProvider{
+
+	private final int size;
+	private final float max;
+	private float value;
+
+	/**
+	 * Constructor for FakeSensor.
+	 *
+	 * @param size The amount of values in each sample, such as 1 for a distance or 3 for an RGB reading.
+	 * @param max The values cycle between 0 and this.
+	 */
+	FakeSensor(int size, float max){
+		this.size = size;
+		this.max = max;
+	}
+
+	public int sampleSize(){
+		return size;
+	}
+
+	public void fetchSample(float[] sample, int offset){
+		for(int i = 0; i < size; i++){
+			value = (value + 0.37f) % max;
+			sample[offset + i] = value;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package testing;
+
+import finalProject.Filter;
+import finalProject.Filter.Type;
+
+/**
+ * A micro-benchmark measuring how much the threads reading a filter slow down the thread sampling it.
+ * The filter is first shared the old way, with every read and write going through the same monitor,
+ * then the filter is read directly through its lock-free published value.
+ * The sampling thread reads a FakeSensor, so any slowdown comes from the readers contending for the filter.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class FilterBenchmark {
+
+	//constants
+	private static final int READERS = 3, DURATION = 3000, WINDOW = 5;
+
+	private static volatile boolean running;
+	private static volatile double sink;
+
+
+	public static void main(String[] args) throws InterruptedException {
+
+		//warm up both versions before measuring
+		run(true, 500);
+		run(false, 500);
+
+		long[] locked = run(true, DURATION);
+		long[] lockFree = run(false, DURATION);
+
+		System.out.println("locked writes/s: " + locked[0] * 1000 / DURATION);
+		System.out.println("locked reads/s: " + locked[1] * 1000 / DURATION);
+		System.out.println("locked max write: " + locked[2] / 1000 + "us");
+		System.out.println("free writes/s: " + lockFree[0] * 1000 / DURATION);
+		System.out.println("free reads/s: " + lockFree[1] * 1000 / DURATION);
+		System.out.println("free max write: " + lockFree[2] / 1000 + "us");
+	}
+
+
+	//runs one writer and READERS readers on the same filter for the given duration
+	//returns the amount of writes, the amount of reads and the longest write in ns
+	private static long[] run(final boolean locked, int duration) throws InterruptedException {
+
+		final Filter filter = new Filter(Type.AVERAGE, new FakeSensor(1, 2.5f), WINDOW);
+		final Object lock = new Object();
+		final long[] writes = new long[2];
+		final long[] reads = new long[READERS];
+		Thread[] threads = new Thread[READERS + 1];
+		running = true;
+
+		threads[0] = new Thread(new Runnable(){
+			public void run(){
+				long start, elapsed, count = 0, max = 0;
+				while(running){
+					start = System.nanoTime();
+					if(locked){
+						synchronized (lock) {
+							filter.addSample();
+						}
+					}
+					else{
+						filter.addSample();
+					}
+					elapsed = System.nanoTime() - start;
+					if(elapsed > max)
+						max = elapsed;
+					count++;
+				}
+				writes[0] = count;
+				writes[1] = max;
+			}
+		});
+
+		for(int i = 0; i < READERS; i++){
+			final int reader = i;
+			threads[i+1] = new Thread(new Runnable(){
+				public void run(){
+					long count = 0;
+					double d = 0;
+					while(running){
+						if(locked){
+							synchronized (lock) {
+								d += filter.getFilteredData();
+							}
+						}
+						else{
+							d += filter.getFilteredData();
+						}
+						count++;
+					}
+					reads[reader] = count;
+					sink = d;
+				}
+			});
+		}
+
+		for(Thread t : threads)
+			t.start();
+		Thread.sleep(duration);
+		running = false;
+		for(Thread t : threads)
+			t.join();
+
+		long totalReads = 0;
+		for(long r : reads)
+			totalReads += r;
+		return new long[]{writes[0], totalReads, writes[1]};
+	}
+}
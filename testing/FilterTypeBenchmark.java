@@ -0,0 +1,102 @@
+package testing;
+
+import finalProject.Filter;
+import finalProject.Filter.Type;
+
+/**
+ * A micro-benchmark measuring the cost of adding a sample to and reading each type of filter.
+ * Every filter calls its strategy from the same place in Filter, so that call stays virtual. On the robot, filters of
+ * several types are updated in turn, which is measured by the mixed case at the end. The types measured after the first
+ * also run after that call has seen other types, so only the first one shows the cost of a call that always sees the same type.
+ * The samples come from a FakeSensor.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class FilterTypeBenchmark {
+
+	//constants
+	private static final int ITERATIONS = 2000000, WARMUP = 200000, WINDOW = 5;
+
+	private static volatile double sink;
+
+
+	public static void main(String[] args) {
+
+		for(Type t : Type.values()){
+			Filter filter = new Filter(t, new FakeSensor(3, 1.2f), WINDOW);
+
+			//warm up before measuring
+			measureWrites(filter, WARMUP);
+			measureReads(filter, WARMUP);
+
+			long write = measureWrites(filter, ITERATIONS);
+			long read = measureReads(filter, ITERATIONS);
+
+			System.out.println(t + " write: " + write * 1000 / ITERATIONS + "ps");
+			System.out.println(t + " read: " + read * 1000 / ITERATIONS + "ps");
+		}
+
+		//one filter of each type, updated in turn
+		Type[] types = Type.values();
+		Filter[] filters = new Filter[types.length];
+		for(int i = 0; i < types.length; i++)
+			filters[i] = new Filter(types[i], new FakeSensor(3, 1.2f), WINDOW);
+
+		measureMixedWrites(filters, WARMUP);
+		measureMixedReads(filters, WARMUP);
+
+		long write = measureMixedWrites(filters, ITERATIONS);
+		long read = measureMixedReads(filters, ITERATIONS);
+
+		System.out.println("MIXED write: " + write * 1000 / ITERATIONS + "ps");
+		System.out.println("MIXED read: " + read * 1000 / ITERATIONS + "ps");
+	}
+
+
+	//adds the given amount of samples, returns the total time in ns
+	private static long measureWrites(Filter filter, int iterations){
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++)
+			filter.addSample();
+		return System.nanoTime() - start;
+	}
+
+	//reads the filtered data the given amount of times, returns the total time in ns
+	private static long measureReads(Filter filter, int iterations){
+		double d = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++)
+			d += filter.getFilteredData();
+		long elapsed = System.nanoTime() - start;
+		sink = d;
+		return elapsed;
+	}
+
+	//adds the given amount of samples, to each filter in turn, returns the total time in ns
+	private static long measureMixedWrites(Filter[] filters, int iterations){
+		int j = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++){
+			filters[j].addSample();
+			if(++j == filters.length)
+				j = 0;
+		}
+		return System.nanoTime() - start;
+	}
+
+	//reads the filtered data the given amount of times, from each filter in turn, returns the total time in ns
+	private static long measureMixedReads(Filter[] filters, int iterations){
+		double d = 0;
+		int j = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++){
+			d += filters[j].getFilteredData();
+			if(++j == filters.length)
+				j = 0;
+		}
+		long elapsed = System.nanoTime() - start;
+		sink = d;
+		return elapsed;
+	}
+}
@@ -0,0 +1,73 @@
+package testing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+
+import finalProject.Angle;
+import finalProject.Navigator;
+import finalProject.Odometer;
+import finalProject.Utility;
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+
+/**
+ * The program that records the step response of the navigator's heading controller, to tune its gains.
+ *
+ * Place the robot with about 2m of free space in front of it and press enter. The robot drives straight, and after a second
+ * its odometer angle is shifted by STEP, as if the robot had suddenly been knocked off course. The controller then turns
+ * the robot back towards its destination without stopping. Every update of the controller is saved in heading.txt,
+ * in the format described in Navigator.setLog(), and the line "# step" marks when the step happened.
+ * A good response brings the error back near 0 within half a second, without turning on the spot or oscillating.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class HeadingStepTest {
+
+	//motors
+	private static final TextLCD t = LocalEV3.get().getTextLCD();
+	private static final EV3LargeRegulatedMotor leftMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("A"));
+	private static final EV3LargeRegulatedMotor rightMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("D"));
+
+	//constants
+	private static final double TRACK = 16.45, WHEEL_RADIUS = 2.05;
+	private static final double DISTANCE = 180, STEP = Math.toRadians(10);
+	private static final int STEP_TIME = 1000;
+	//the gains to test
+	private static final double KP = 4, KI = 1, KD = 0.2;
+
+
+	public static void main(String[] args) throws Exception {
+
+		Utility.exit.start();
+		Odometer odometer = new Odometer(leftMotor, rightMotor, null, TRACK, WHEEL_RADIUS);
+		Navigator navigator = new Navigator(odometer, leftMotor, rightMotor);
+		odometer.start();
+		navigator.start();
+
+		PrintWriter p = new PrintWriter(new FileOutputStream(new File("heading.txt")));
+		p.println("# kp " + KP + " ki " + KI + " kd " + KD + " step " + STEP);
+		navigator.setHeadingGains(KP, KI, KD);
+		navigator.setLog(p);
+
+		t.drawString("Enter to start", 0, 0);
+		while(Button.waitForAnyPress() != Button.ID_ENTER);
+
+		navigator.travelTo(DISTANCE, 0);
+		Thread.sleep(STEP_TIME);
+		odometer.setTheta(Angle.normalize(odometer.getTheta() + STEP));
+		p.println("# step");
+		Sound.beep();
+		navigator.waitForStop();
+
+		navigator.setLog(null);
+		p.close();
+		t.drawString("Saved         ", 0, 0);
+		Button.waitForAnyPress();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,145 @@
+package testing;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * The program that finds the wheel geometry used by the odometer from recordings of testing.CalibrationRecorder.
+ * It runs on a computer, not on the robot: java testing.OdometryCalibration calibration.txt [more recordings...]
+ *
+ * A recording is a list of motions. Each motion starts with a line "motion distance rotation", giving how far the robot
+ * really went (in cm, negative backwards) and how much it really turned (in degrees, counterclockwise), followed by lines
+ * "time tachoL tachoR" recorded during the motion. Any motion can be used, such as a square path, as long as the robot
+ * turns on itself: then only the total change of each tacho matters.
+ *
+ * With the radius of the left wheel b, the radius of the right wheel a, the track T and the tacho changes L and R (in rads),
+ * each motion gives two equations which are linear in a, b and T:
+ * a*R + b*L = 2*distance, and a*R - b*L - T*rotation = 0.
+ * They are solved with least squares, so there must be at least one motion which goes straight and one which turns.
+ * The constants to use are then WHEEL_RADIUS = b, CORRECTION = a/b and TRACK = T.
+ *
+ * @version 1.0
+ * @author Mathieu Bolduc
+ */
+public class OdometryCalibration {
+
+	public static void main(String[] args) throws IOException {
+
+		if(args.length == 0){
+			System.out.println("usage: java testing.OdometryCalibration recording.txt [more recordings...]");
+			return;
+		}
+
+		//read the total tacho changes of every motion, along with their real distance and rotation
+		ArrayList<double[]> motions = new ArrayList<double[]>();
+		for(String file : args)
+			read(file, motions);
+
+		//build the normal equations of both equations of every motion
+		double[][] normal = new double[3][3];
+		double[] right = new double[3];
+		for(double[] m : motions){
+			addRow(normal, right, new double[]{m[3], m[2], 0}, 2*m[0]);
+			addRow(normal, right, new double[]{m[3], -m[2], -m[1]}, 0);
+		}
+
+		double[] solution = solve(normal, right);
+		if(solution == null){
+			System.out.println("The motions do not determine the geometry: record at least one straight motion and one spin.");
+			return;
+		}
+		double a = solution[0], b = solution[1], track = solution[2];
+
+		//show how well each motion is explained by the solution
+		System.out.println("motion  distance (real / calculated)  rotation (real / calculated)");
+		for(int i = 0; i < motions.size(); i++){
+			double[] m = motions.get(i);
+			System.out.printf("%6d  %8.2f / %8.2f cm           %8.2f / %8.2f deg%n", i+1,
+					m[0], (a*m[3] + b*m[2]) / 2, Math.toDegrees(m[1]), Math.toDegrees((a*m[3] - b*m[2]) / track));
+		}
+
+		System.out.println();
+		System.out.printf("TRACK = %.4f, WHEEL_RADIUS = %.4f, CORRECTION = %.5f%n", track, b, a / b);
+	}
+
+
+	//reads the motions of a recording. Each motion is added as {distance, rotation in rads, left tacho change in rads, right tacho change in rads}
+	private static void read(String file, ArrayList<double[]> motions) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		double[] motion = null;
+		double firstL = 0, firstR = 0;
+		boolean first = true;
+		String line;
+
+		while((line = reader.readLine()) != null){
+			String[] values = line.trim().split("\\s+");
+			if(values.length == 0 || values[0].isEmpty() || values[0].startsWith("#"))
+				continue;
+			if(values[0].equals("motion")){
+				motion = new double[]{Double.parseDouble(values[1]), Math.toRadians(Double.parseDouble(values[2])), 0, 0};
+				motions.add(motion);
+				first = true;
+			}
+			else if(motion != null){
+				double tachoL = Math.toRadians(Double.parseDouble(values[1])), tachoR = Math.toRadians(Double.parseDouble(values[2]));
+				if(first){
+					firstL = tachoL;
+					firstR = tachoR;
+					first = false;
+				}
+				//the motion uses the total change since its first line
+				motion[2] = tachoL - firstL;
+				motion[3] = tachoR - firstR;
+			}
+		}
+		reader.close();
+	}
+
+	//adds the equation row*u = value to the normal equations
+	private static void addRow(double[][] normal, double[] right, double[] row, double value){
+		for(int i = 0; i < 3; i++){
+			for(int j = 0; j < 3; j++)
+				normal[i][j] += row[i] * row[j];
+			right[i] += row[i] * value;
+		}
+	}
+
+	//solves a system of linear equations with gaussian elimination. Returns null if it has no single solution
+	private static double[] solve(double[][] m, double[] v){
+		int n = v.length;
+		double scale = 0;
+		for(double[] row : m)
+			for(double d : row)
+				scale = Math.max(scale, Math.abs(d));
+
+		for(int col = 0; col < n; col++){
+			//use the largest pivot to limit rounding errors
+			int pivot = col;
+			for(int i = col + 1; i < n; i++)
+				if(Math.abs(m[i][col]) > Math.abs(m[pivot][col]))
+					pivot = i;
+			if(Math.abs(m[pivot][col]) <= 1e-12 * scale)
+				return null;
+			double[] tempRow = m[col]; m[col] = m[pivot]; m[pivot] = tempRow;
+			double temp = v[col]; v[col] = v[pivot]; v[pivot] = temp;
+
+			for(int i = col + 1; i < n; i++){
+				double factor = m[i][col] / m[col][col];
+				for(int j = col; j < n; j++)
+					m[i][j] -= factor * m[col][j];
+				v[i] -= factor * v[col];
+			}
+		}
+
+		double[] result = new double[n];
+		for(int i = n - 1; i >= 0; i--){
+			double sum = v[i];
+			for(int j = i + 1; j < n; j++)
+				sum -= m[i][j] * result[j];
+			result[i] = sum / m[i][i];
+		}
+		return result;
+	}
+}
@@ -11,6 +11,7 @@ import finalProject.Navigator;
 import finalProject.ObstacleAvoider;
 import finalProject.Odometer;
 import finalProject.OdometryCorrection;
+import finalProject.SensorSampler;
 import finalProject.Utility;
 import lejos.hardware.Button;
 import lejos.hardware.Sound;
@@ -44,11 +45,12 @@ public class PathTest {
 		Button.waitForAnyPress();
 		
 		//instantiate classes
+		SensorSampler sampler = new SensorSampler();
 		Odometer odometer = new Odometer(leftMotor, rightMotor, null, TRACK, WHEEL_RADIUS);	//the gyro is null if we dont want to use it
 		Navigator navigator = new Navigator(odometer, leftMotor, rightMotor);
-		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor);
-		Localizer localizer = new Localizer(navigator, odometer, usSensor, null, SENSOR_DIST_TANGENT, 1);
-		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0);
+		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor, sampler);
+		Localizer localizer = new Localizer(navigator, odometer, usSensor, null, SENSOR_DIST_TANGENT, 1, sampler);
+		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0, sampler);
 		//Launcher launcher = new Launcher(launchMotor);
 		Aegis aegis = new Aegis(flapsMotor);
 		Display display = new Display(t, new Object[]{odometer, obstacleAvoider.usFilter});	//set the objects we want to display
@@ -57,6 +59,7 @@ public class PathTest {
 		
 		//start the treads
 		Utility.exit.start();
+		sampler.start();
 		odometer.start();
 		navigator.start();
 		display.start();
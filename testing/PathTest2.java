@@ -14,6 +14,7 @@ import finalProject.Navigator;
 import finalProject.ObstacleAvoider;
 import finalProject.Odometer;
 import finalProject.OdometryCorrection;
+import finalProject.SensorSampler;
 import finalProject.Utility;
 import lejos.hardware.Button;
 import lejos.hardware.Sound;
@@ -50,20 +51,22 @@ public class PathTest2 {
 		Button.waitForAnyPress();
 		
 		//instantiate classes
+		SensorSampler sampler = new SensorSampler();
 		Odometer odometer = new Odometer(leftMotor, rightMotor, null, TRACK, WHEEL_RADIUS);	//the gyro is null if we dont want to use it
 		Navigator navigator = new Navigator(odometer, leftMotor, rightMotor);
-		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor);
-		Localizer localizer = new Localizer(navigator, odometer, usSensor, colorSensor1, SENSOR_DIST_TANGENT, 1);
-		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0);
+		ObstacleAvoider obstacleAvoider = new ObstacleAvoider(navigator, odometer, usSensor, sampler);
+		Localizer localizer = new Localizer(navigator, odometer, usSensor, colorSensor1, SENSOR_DIST_TANGENT, 1, sampler);
+		//OdometryCorrection odometryCorrection = new OdometryCorrection(odometer, navigator, colorSensor, null, SENSOR_DIST_TANGENT, 0, sampler);
 		Launcher launcher = new Launcher(launchMotor, touchSensor);
 		Aegis aegis = new Aegis(flapsMotor);
-		ColorRecognizer colorRecognizer = new ColorRecognizer(navigator, colorSensor2);
+		ColorRecognizer colorRecognizer = new ColorRecognizer(navigator, colorSensor2, sampler);
 		Display display = new Display(t, new Object[]{odometer, obstacleAvoider.usFilter});	//set the objects we want to display
 		//WifiConnection wifiConnection = new WifiConnection(SERVER_IP, TEAM_NUMBER);
 		
 		
 		//start the treads
 		Utility.exit.start();
+		sampler.start();
 		odometer.start();
 		navigator.start();
 		display.start();